@@ -0,0 +1,112 @@
+package com.pantsu.scrollwidget.view;
+
+import java.util.Arrays;
+
+import android.view.Choreographer;
+import androidx.annotation.NonNull;
+
+import io.reactivex.Flowable;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.subscribers.DisposableSubscriber;
+
+/**
+ * 收集实时推送的消息 id，每帧最多回调一次，把这一帧内到达的消息合并成一批。
+ * <p>
+ * 背压：最多向上游请求 {@link #MAX_PENDING} 条，只有一批消息被应用到列表之后才继续请求，
+ * 主线程来不及处理时上游会被阻塞在自己的背压策略上。
+ */
+final class LiveMessageIngester {
+
+  static final int MAX_PENDING = 256;
+
+  interface OnBatchListener {
+    /** 在主线程回调，ids 按到达顺序排列 */
+    void onBatch(@NonNull int[] ids);
+  }
+
+  private final OnBatchListener mListener;
+  private final Choreographer.FrameCallback mFrameCallback = frameTimeNanos -> applyBatch();
+
+  private LiveSubscriber mSubscriber;
+  private int[] mBuffer = new int[16];
+  private int mCount;
+  private boolean mFrameScheduled;
+
+  LiveMessageIngester(@NonNull OnBatchListener listener) {
+    mListener = listener;
+  }
+
+  void subscribe(@NonNull Flowable<Integer> messages) {
+    dispose();
+    mSubscriber = new LiveSubscriber();
+    messages
+        .observeOn(AndroidSchedulers.mainThread(), false, MAX_PENDING)
+        .subscribe(mSubscriber);
+  }
+
+  void dispose() {
+    if (mSubscriber != null) {
+      mSubscriber.dispose();
+      mSubscriber = null;
+    }
+    if (mFrameScheduled) {
+      mFrameScheduled = false;
+      Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+    }
+    mCount = 0;
+  }
+
+  private void add(int id) {
+    if (mCount == mBuffer.length) {
+      mBuffer = Arrays.copyOf(mBuffer, mBuffer.length * 2);
+    }
+    mBuffer[mCount++] = id;
+    if (!mFrameScheduled) {
+      mFrameScheduled = true;
+      Choreographer.getInstance().postFrameCallback(mFrameCallback);
+    }
+  }
+
+  private void applyBatch() {
+    mFrameScheduled = false;
+    final LiveSubscriber subscriber = mSubscriber;
+    if (subscriber == null || mCount == 0) {
+      return;
+    }
+    final int count = mCount;
+    final int[] ids = Arrays.copyOf(mBuffer, count);
+    mCount = 0;
+    mListener.onBatch(ids);
+    // 回调中可能已经取消订阅
+    if (mSubscriber == subscriber) {
+      subscriber.requestMore(count);
+    }
+  }
+
+  private final class LiveSubscriber extends DisposableSubscriber<Integer> {
+    @Override
+    protected void onStart() {
+      request(MAX_PENDING);
+    }
+
+    @Override
+    public void onNext(Integer id) {
+      if (mSubscriber == this) {
+        add(id);
+      }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      // 实时消息流中断时保留已经收到的消息，由业务方决定是否重新订阅
+    }
+
+    @Override
+    public void onComplete() {
+    }
+
+    void requestMore(long n) {
+      request(n);
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package com.pantsu.scrollwidget.view;
+
+import androidx.annotation.NonNull;
+
+import com.pantsu.scrollwidget.view.view.NestedScrollLoadingLayout.Direction;
+
+import io.reactivex.Flowable;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.subscribers.DisposableSubscriber;
+
+/**
+ * 管理 {@link PageList} 的加载请求，只在主线程调用。
+ * <p>
+ * 每个方向同时最多一个请求，重复触发直接忽略；{@link #cancelAll()} 取消全部请求并使代次失效，
+ * 取消前已经投递到主线程、但尚未执行的结果会因代次不匹配被丢弃；{@link #cancel(Direction)} 只取消一个方向。
+ */
+class LoadCoordinator {
+
+  private final Disposable[] mInFlight = new Disposable[Direction.values().length];
+  private int mGeneration;
+
+  boolean isLoading(@NonNull Direction direction) {
+    return mInFlight[direction.ordinal()] != null;
+  }
+
+  /**
+   * 分块加载：每个分块到达时回调 onNext，直到完成或出错前该方向都视为正在加载。
+   *
+   * @return false 表示该方向已有请求在进行，本次请求被忽略
+   */
+  <T> boolean loadStream(@NonNull Direction direction, @NonNull Flowable<T> request, @NonNull Consumer<T> onNext,
+                         @NonNull Action onComplete, @NonNull Consumer<Throwable> onError) {
+    final int index = direction.ordinal();
+    if (mInFlight[index] != null) {
+      return false;
+    }
+    final int generation = mGeneration;
+    DisposableSubscriber<T> subscriber = new DisposableSubscriber<T>() {
+      @Override
+      public void onNext(T chunk) {
+        if (isCurrent(this, index, generation)) {
+          deliver(onNext, chunk);
+        }
+      }
+
+      @Override
+      public void onError(Throwable e) {
+        if (finish(this, index, generation)) {
+          deliver(onError, e);
+        }
+      }
+
+      @Override
+      public void onComplete() {
+        if (finish(this, index, generation)) {
+          try {
+            onComplete.run();
+          } catch (Exception e) {
+            throw new RuntimeException(e);
+          }
+        }
+      }
+    };
+    mInFlight[index] = subscriber;
+    request.observeOn(AndroidSchedulers.mainThread()).subscribe(subscriber);
+    return true;
+  }
+
+  void cancelAll() {
+    ++mGeneration;
+    for (int i = 0; i < mInFlight.length; ++i) {
+      if (mInFlight[i] != null) {
+        mInFlight[i].dispose();
+        mInFlight[i] = null;
+      }
+    }
+  }
+
+  /** 只取消一个方向的请求，取消前已经投递到主线程的结果同样会被丢弃 */
+  void cancel(@NonNull Direction direction) {
+    final int index = direction.ordinal();
+    if (mInFlight[index] != null) {
+      mInFlight[index].dispose();
+      mInFlight[index] = null;
+    }
+  }
+
+  private boolean isCurrent(Disposable request, int index, int generation) {
+    return generation == mGeneration && mInFlight[index] == request;
+  }
+
+  private boolean finish(Disposable request, int index, int generation) {
+    if (!isCurrent(request, index, generation)) {
+      return false;
+    }
+    mInFlight[index] = null;
+    return true;
+  }
+
+  private static <T> void deliver(Consumer<T> consumer, T value) {
+    try {
+      consumer.accept(value);
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
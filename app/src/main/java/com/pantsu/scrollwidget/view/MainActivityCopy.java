@@ -6,13 +6,28 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.pantsu.scrollwidget.R;
+import com.pantsu.scrollwidget.view.data.InMemoryPageSource;
 import com.pantsu.scrollwidget.view.data.MyListAdapter;
+import com.pantsu.scrollwidget.view.data.PageCaches;
 import com.pantsu.scrollwidget.view.view.NestedScrollLoadingLayout;
 
+import io.reactivex.schedulers.Schedulers;
+
 public class MainActivityCopy extends AppCompatActivity {
 
+  private static final int PREFETCH_DISTANCE = 5;
+  private static final String CONVERSATION_ID = "main";
+  /** 列表最多保留的消息条数 */
+  private static final int MAX_WINDOW_SIZE = 200;
+  /** 模拟的加载耗时 */
+  private static final long LOAD_OLD_DELAY_MS = 300L;
+  private static final long LOAD_NEW_DELAY_MS = 5000L;
+  /** 模拟慢速数据源分块返回 */
+  private static final int LOAD_CHUNK_SIZE = 5;
 
   private PageList mPageList;
+  /** 本页面内多个列表共用的回收池，随页面销毁清空 */
+  private final RecyclerView.RecycledViewPool mViewPool = MyListAdapter.createSharedViewPool();
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -20,20 +35,39 @@ public class MainActivityCopy extends AppCompatActivity {
     setContentView(R.layout.activity_main_copy);
 
     MyListAdapter adapter = new MyListAdapter();
+    adapter.setPrecomputeText(true);
     RecyclerView recyclerView = findViewById(R.id.recycler_view);
     recyclerView.setLayoutManager(new LinearLayoutManager(this));
     recyclerView.setAdapter(adapter);
 
-    PageList pageList = new PageList((NestedScrollLoadingLayout) recyclerView.getParent(), recyclerView, adapter);
+    InMemoryPageSource pageSource = new InMemoryPageSource();
+    pageSource.setDelays(LOAD_OLD_DELAY_MS, LOAD_NEW_DELAY_MS);
+    pageSource.setChunkSize(LOAD_CHUNK_SIZE);
+    PageList pageList = new PageList((NestedScrollLoadingLayout) recyclerView.getParent(), recyclerView, adapter,
+        PageCaches.forConversation(this, CONVERSATION_ID), pageSource, Schedulers.io(), Schedulers.computation());
+    pageList.setMaxWindowSize(MAX_WINDOW_SIZE);
     mPageList = pageList;
 
     NestedScrollLoadingLayout nestedScrollLoadingLayout = findViewById(R.id.refresh_layout);
-    nestedScrollLoadingLayout.addOnLoadListener(direction -> {
-      if (direction == NestedScrollLoadingLayout.Direction.TOP) {
-        mPageList.loadMoreOld();
-      } else if (direction == NestedScrollLoadingLayout.Direction.BOTTOM) {
-        mPageList.loadMoreNew();
-      }
-    });
+    nestedScrollLoadingLayout.setRecycledViewPool(mViewPool);
+    nestedScrollLoadingLayout.addOnLoadListener(this::loadMore);
+    nestedScrollLoadingLayout.setPrefetchDistance(PREFETCH_DISTANCE);
+    nestedScrollLoadingLayout.setOffsetMode(NestedScrollLoadingLayout.OffsetMode.TRANSLATION);
+    nestedScrollLoadingLayout.addOnPrefetchListener(this::loadMore);
+  }
+
+  @Override
+  protected void onDestroy() {
+    super.onDestroy();
+    mPageList.release();
+    mViewPool.clear();
+  }
+
+  private void loadMore(NestedScrollLoadingLayout.Direction direction) {
+    if (direction == NestedScrollLoadingLayout.Direction.TOP) {
+      mPageList.loadMoreOld();
+    } else if (direction == NestedScrollLoadingLayout.Direction.BOTTOM) {
+      mPageList.loadMoreNew();
+    }
   }
 }
@@ -1,42 +1,243 @@
 package com.pantsu.scrollwidget.view;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
+import android.util.Log;
+import android.view.View;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.pantsu.scrollwidget.view.data.ConversationPageCache;
+import com.pantsu.scrollwidget.view.data.InMemoryPageSource;
 import com.pantsu.scrollwidget.view.data.MyListAdapter;
+import com.pantsu.scrollwidget.view.data.PageSource;
 import com.pantsu.scrollwidget.view.view.NestedScrollLoadingLayout;
+import com.pantsu.scrollwidget.view.view.NestedScrollLoadingLayout.Direction;
 
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
 import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
 import io.reactivex.schedulers.Schedulers;
 
 public class PageList {
 
+  private static final String TAG = "PageList";
+  private static final int PAGE_SIZE = 20;
+  /** 首次打开时以该 id 为中心加载 */
+  private static final int INITIAL_ID = 120;
+  private static final int INITIAL_COUNT = 2 * PAGE_SIZE;
+
   private NestedScrollLoadingLayout mLoadingLayout;
   private RecyclerView mRecyclerView;
   private MyListAdapter mAdapter;
+  /** 内存 + 磁盘分页缓存，命中时不再请求数据源 */
+  private final ConversationPageCache mCache;
+  private final PageSource mPageSource;
+  /** 订阅数据源的线程 */
+  private final Scheduler mIoScheduler;
+  /** 数据源返回后处理数据（写入缓存等）的线程 */
+  private final Scheduler mDecodeScheduler;
+  private Disposable mInitialLoad;
+  private final LoadCoordinator mLoadCoordinator = new LoadCoordinator();
+  private final LiveMessageIngester mLiveIngester = new LiveMessageIngester(this::onLiveMessages);
+
+  /** 列表从窗口移除时取消所有进行中的加载，避免结果回调到已销毁的界面；重新添加时补上未完成的首页加载 */
+  private final View.OnAttachStateChangeListener mAttachStateListener = new View.OnAttachStateChangeListener() {
+    @Override
+    public void onViewAttachedToWindow(View v) {
+      if (!mInitialized && mInitialLoad == null) {
+        initData();
+      }
+    }
 
+    @Override
+    public void onViewDetachedFromWindow(View v) {
+      cancelLoads();
+    }
+  };
+
+  /** 当前列表中的 id 区间，首页加载完成前 mInitialized 为 false */
+  private boolean mInitialized;
   private int mFromId, mToId;
+  /** 数据源返回的条数不足时记录边界，之后不再显示该方向的 LoadingView */
   private int mMinId, mMaxId;
 
+  /** 加载完成时用于恢复滚动位置的锚点条目 */
+  private boolean mHasAnchor;
+  private int mAnchorId;
+  private int mAnchorOffset;
+  private int mFirstLaidOutPosition;
+  private int mLastLaidOutPosition;
+
+  /** 滑动窗口大小（条数），<= 0 时不裁剪 */
+  private int mMaxWindowSize;
+
   public PageList(NestedScrollLoadingLayout refreshLayout, RecyclerView recyclerView, MyListAdapter adapter) {
+    this(refreshLayout, recyclerView, adapter, null, new InMemoryPageSource(),
+        Schedulers.io(), Schedulers.computation());
+  }
+
+  /**
+   * @param cache           分页缓存，为 null 时每次都请求数据源
+   * @param pageSource      数据源
+   * @param ioScheduler     订阅数据源的线程，数据库、网络请求应使用 IO 线程
+   * @param decodeScheduler 处理数据源返回结果的线程
+   */
+  public PageList(NestedScrollLoadingLayout refreshLayout, RecyclerView recyclerView, MyListAdapter adapter,
+                  @Nullable ConversationPageCache cache, @NonNull PageSource pageSource,
+                  @NonNull Scheduler ioScheduler, @NonNull Scheduler decodeScheduler) {
     mLoadingLayout = refreshLayout;
     mRecyclerView = recyclerView;
     mAdapter = adapter;
+    mCache = cache;
+    mPageSource = pageSource;
+    mIoScheduler = ioScheduler;
+    mDecodeScheduler = decodeScheduler;
+    mLoadingLayout.addOnAttachStateChangeListener(mAttachStateListener);
 
     initData();
   }
 
+  /** 页面销毁时调用，取消所有加载请求 */
+  public void release() {
+    mLoadingLayout.removeOnAttachStateChangeListener(mAttachStateListener);
+    cancelLoads();
+    mLiveIngester.dispose();
+  }
+
+  /** 取消后不会再有结果回调来收起 LoadingView，这里直接复位，否则加载状态会一直拦截触摸事件 */
+  private void cancelLoads() {
+    mLoadCoordinator.cancelAll();
+    if (mInitialLoad != null) {
+      mInitialLoad.dispose();
+      mInitialLoad = null;
+    }
+    mLoadingLayout.stopLoading(false);
+  }
+
+  /**
+   * 开启滑动窗口：列表最多保留约 maxItems 条消息（按整页裁剪），远离可见区域的一端会被删除，
+   * 并重新显示该端的 LoadingView 以便重新加载。<= 0 关闭。
+   */
+  public void setMaxWindowSize(int maxItems) {
+    mMaxWindowSize = maxItems;
+  }
+
+  /**
+   * 订阅实时推送的新消息，每帧最多向列表底部插入一次。
+   * 上游需要支持背压（例如 onBackpressureBuffer），UI 处理不过来时不会再请求新的消息。
+   */
+  public void subscribeLive(@NonNull Flowable<Integer> messages) {
+    mLiveIngester.subscribe(messages);
+  }
+
+  public void unsubscribeLive() {
+    mLiveIngester.dispose();
+  }
+
+  /**
+   * 一帧内到达的新消息作为一次范围插入追加到底部，之前已经在底部时保持在底部。
+   * 不大于 mToId 的 id 已经在列表中，直接丢弃；剩下的第一条紧接在 mToId 之后，说明列表底部就是最新一端，才追加。
+   * 否则列表与这一批之间还有未加载的 id，丢弃这一批，之后通过底部的 LoadingView 分页加载，直接追加会留下空缺。
+   * 首页较短时已经知道最新一端（见 {@link #onInitialPage(int[], int, int)}），否则由第一批推送是否连续来判断。
+   */
+  private void onLiveMessages(@NonNull int[] ids) {
+    if (!mInitialized) {
+      return;
+    }
+    int count = 0;
+    int lastId = mToId;
+    for (int id : ids) {
+      if (id > lastId) {
+        ids[count++] = id;
+        lastId = id;
+      }
+    }
+    if (count == 0) {
+      return;
+    }
+    // 底部正在加载时同样丢弃，加载结果可能与这一批重复
+    if (ids[0] != mToId + 1 || mLoadCoordinator.isLoading(Direction.BOTTOM)) {
+      mMaxId = Math.max(mMaxId, lastId);
+      mLoadingLayout.setShowBottomLoadingView(true);
+      return;
+    }
+    final int[] newIds = (count == ids.length) ? ids : Arrays.copyOf(ids, count);
+    final boolean pinned = !mRecyclerView.canScrollVertically(1);
+    mToId = lastId;
+    // 仍然位于最新一端
+    mMaxId = mToId;
+    captureAnchor();
+    mHasAnchor = false;
+    mAdapter.appendData(newIds);
+    trimWindow(Direction.BOTTOM, newIds.length);
+    mLoadingLayout.setShowTopLoadingView(hasMoreOld());
+    if (pinned) {
+      mRecyclerView.scrollToPosition(mAdapter.getItemCount() - 1);
+    }
+  }
+
   private void initData() {
-    mFromId = 100;
-    mToId = 139;
     mMinId = Integer.MIN_VALUE;
     mMaxId = Integer.MAX_VALUE;
-    mAdapter.setData(loadData(mFromId, mToId));
+    final int from = INITIAL_ID - INITIAL_COUNT / 2;
+    final int to = from + INITIAL_COUNT - 1;
+    // 冷启动时优先使用上次缓存的首页，同步显示
+    final int[] cached = getCachedPage(from, to);
+    if (cached != null) {
+      onInitialPage(cached, from, to);
+      return;
+    }
+    mInitialLoad = requestPage(from, to, mPageSource.around(INITIAL_ID, INITIAL_COUNT))
+        .observeOn(AndroidSchedulers.mainThread())
+        .subscribe(page -> {
+          mInitialLoad = null;
+          onInitialPage(page, from, to);
+        }, this::onInitialLoadError);
+  }
+
+  /** 首页加载失败后 mInitialized 保持 false，下次拉动 LoadingView 或列表重新添加到窗口时重试 */
+  private void onInitialLoadError(Throwable throwable) {
+    mInitialLoad = null;
+    Log.w(TAG, "initial page load failed", throwable);
+    mLoadingLayout.stopLoading(true);
+  }
+
+  /** 首页还未加载成功时拉动 LoadingView：重新请求首页（已在请求中则等待），完成后收起 LoadingView */
+  private void retryInitData() {
+    if (mInitialLoad == null) {
+      initData();
+    }
+  }
+
+  /**
+   * @param from 请求的首页区间，首页没有覆盖到某一端时说明已经到达数据源在该方向的边界，
+   *             其中最新一端即实时消息接入的位置
+   */
+  private void onInitialPage(@NonNull int[] page, int from, int to) {
+    // 通过拉动 LoadingView 重试时需要收起
+    mLoadingLayout.stopLoading(true);
+    if (page.length == 0) {
+      return;
+    }
+    mInitialized = true;
+    mFromId = page[0];
+    mToId = page[page.length - 1];
+    if (mFromId > from) {
+      mMinId = mFromId;
+    }
+    if (mToId < to) {
+      mMaxId = mToId;
+    }
+    mAdapter.submitData(page);
+    mLoadingLayout.setShowTopLoadingView(hasMoreOld());
+    mLoadingLayout.setShowBottomLoadingView(hasMoreNew());
   }
 
   private boolean hasMoreOld() {
@@ -47,62 +248,275 @@ public class PageList {
     return mToId < mMaxId;
   }
 
-  private List<String> loadData(int from, int to) {
-    mFromId = Math.max(from, mMinId);
-    mToId = Math.min(to, mMaxId);
+  /**
+   * 缓存命中时直接返回，不再调度到 IO 线程；否则在 IO 线程订阅数据源，
+   * 在 decode 线程把结果写入缓存。from/to 为本次请求对应的缓存区间。
+   */
+  private Single<int[]> requestPage(int from, int to, @NonNull Single<int[]> source) {
+    final int[] cached = getCachedPage(from, to);
+    if (cached != null) {
+      return Single.just(cached);
+    }
+    return source
+        .subscribeOn(mIoScheduler)
+        .observeOn(mDecodeScheduler)
+        .doOnSuccess(page -> putCachedPage(from, to, page));
+  }
+
+  /**
+   * 只缓存完整的页：不足一页说明到达了数据源当时的边界（见 {@link PageSource}），之后数据源可能新增消息，
+   * 缓存下来会一直当作边界返回。旧版本写入磁盘的不完整页同样不使用。
+   */
+  @Nullable
+  private int[] getCachedPage(int from, int to) {
+    final int[] page = (mCache != null) ? mCache.get(from, to) : null;
+    return (page != null && isFullPage(from, to, page)) ? page : null;
+  }
 
-    List<String> list = new ArrayList<>(to - from);
-    for (int i = mFromId; i <= mToId; ++i) {
-      list.add(" 消息id=" + i + " 消息id=" + i + " 消息id=" + i);
+  private void putCachedPage(int from, int to, int[] page) {
+    if (mCache != null && isFullPage(from, to, page)) {
+      mCache.put(from, to, page);
     }
-    return list;
   }
 
-  public void loadMoreOld() {
-    Single
-        .timer(300, TimeUnit.MILLISECONDS)
-        .map(ignore -> loadData(mFromId - 20, mToId))
-        .subscribeOn(Schedulers.computation())
-        .observeOn(AndroidSchedulers.mainThread())
-        .subscribe(list -> {
-          onFinishLoading(list);
+  private static boolean isFullPage(int from, int to, @NonNull int[] page) {
+    return page.length == (long) to - from + 1;
+  }
+
+  /**
+   * 分块请求：缓存命中时整页作为一块直接返回；否则在 IO 线程订阅数据源，
+   * 在 decode 线程收集所有分块，完整返回后把整页写入缓存。
+   *
+   * @param newestFirst 分块是否从较新的一端开始到达（向前加载时）
+   */
+  private Flowable<int[]> requestChunks(int from, int to, @NonNull Flowable<int[]> source, boolean newestFirst) {
+    final int[] cached = getCachedPage(from, to);
+    if (cached != null) {
+      return Flowable.just(cached);
+    }
+    return source
+        .subscribeOn(mIoScheduler)
+        .observeOn(mDecodeScheduler)
+        .compose(chunks -> Flowable.defer(() -> {
+          final List<int[]> received = new ArrayList<>();
+          return chunks
+              .doOnNext(received::add)
+              .doOnComplete(() -> putCachedPage(from, to, joinChunks(received, newestFirst)));
+        }));
+  }
 
-          mAdapter.setData(list);
-          mAdapter.notifyDataSetChanged();
-        });
+  private static int[] joinChunks(@NonNull List<int[]> chunks, boolean newestFirst) {
+    int size = 0;
+    for (int[] chunk : chunks) {
+      size += chunk.length;
+    }
+    final int[] page = new int[size];
+    int position = newestFirst ? size : 0;
+    for (int[] chunk : chunks) {
+      if (newestFirst) {
+        position -= chunk.length;
+        System.arraycopy(chunk, 0, page, position, chunk.length);
+      } else {
+        System.arraycopy(chunk, 0, page, position, chunk.length);
+        position += chunk.length;
+      }
+    }
+    return page;
+  }
+
+  public void loadMoreOld() {
+    if (!mInitialized) {
+      retryInitData();
+      return;
+    }
+    if (mLoadCoordinator.isLoading(Direction.TOP)) {
+      onDuplicateLoad(Direction.TOP);
+      return;
+    }
+    final int anchorId = mFromId;
+    final int to = anchorId - 1;
+    final int from = to - PAGE_SIZE + 1;
+    final PageLoad load = new PageLoad(Direction.TOP);
+    mLoadCoordinator.loadStream(Direction.TOP,
+        requestChunks(from, to, mPageSource.streamBefore(anchorId, PAGE_SIZE), true),
+        load::onChunk, load::onComplete, load::onError);
   }
 
   public void loadMoreNew() {
-    Single
-        .timer(5000, TimeUnit.MILLISECONDS)
-        .map(ignore -> loadData(mFromId, mToId + 20))
-        .subscribeOn(Schedulers.computation())
-        .observeOn(AndroidSchedulers.mainThread())
-        .subscribe(list -> {
-          onFinishLoading(list);
+    if (!mInitialized) {
+      retryInitData();
+      return;
+    }
+    if (mLoadCoordinator.isLoading(Direction.BOTTOM)) {
+      onDuplicateLoad(Direction.BOTTOM);
+      return;
+    }
+    final int anchorId = mToId;
+    final int from = anchorId + 1;
+    final int to = from + PAGE_SIZE - 1;
+    final PageLoad load = new PageLoad(Direction.BOTTOM);
+    mLoadCoordinator.loadStream(Direction.BOTTOM,
+        requestChunks(from, to, mPageSource.streamAfter(anchorId, PAGE_SIZE), false),
+        load::onChunk, load::onComplete, load::onError);
+  }
 
-          mAdapter.setData(list);
-          mAdapter.notifyDataSetChanged();
-        });
+  /**
+   * 该方向的分块加载还在进行时再次触发（拉出 LoadingView 或预加载），本次请求直接忽略。
+   * 拉出的 LoadingView 马上收起，剩余的分块仍会插入到列表边缘；预加载在进行中的加载结束时重新允许。
+   */
+  private void onDuplicateLoad(@NonNull Direction direction) {
+    if (mLoadingLayout.isLoading(direction)) {
+      mLoadingLayout.stopLoading(true);
+    }
   }
 
-  private void onFinishLoading(List<String> newData) {
-    // 滚动列表
-    final LinearLayoutManager mLayoutManager = (LinearLayoutManager) mRecyclerView.getLayoutManager();
-    final boolean keepPosition = mAdapter.getData().size() > 0
-        && (mLayoutManager.findFirstCompletelyVisibleItemPosition() == 0);
-    if (keepPosition) {
-      String firstItem = mAdapter.getData().get(0);
-      int index = newData.indexOf(firstItem);
-      int scrollOffset = mLoadingLayout.getTargetViewOffset();
-      mRecyclerView.post(() -> mLayoutManager.scrollToPositionWithOffset(Math.max(index, 0), scrollOffset));
+  /** 一次分块加载的进度，各分块依次插入到加载的一端 */
+  private final class PageLoad {
+    private final Direction mDirection;
+    private int mReceived;
+
+    PageLoad(@NonNull Direction direction) {
+      mDirection = direction;
     }
 
-    // 停止刷新
-    boolean animation = mAdapter.getData().size() == newData.size();
-    mLoadingLayout.stopLoading(animation);
+    void onChunk(@NonNull int[] chunk) {
+      if (chunk.length == 0) {
+        return;
+      }
+      final boolean first = mReceived == 0;
+      mReceived += chunk.length;
 
-    mLoadingLayout.setShowTopLoadingView(hasMoreOld());
-    mLoadingLayout.setShowBottomLoadingView(hasMoreNew());
+      captureAnchor();
+      if (mDirection == Direction.TOP) {
+        mFromId = Math.min(mFromId, chunk[0]);
+        mAdapter.prependData(chunk);
+      } else {
+        mToId = Math.max(mToId, chunk[chunk.length - 1]);
+        mAdapter.appendData(chunk);
+      }
+      trimWindow(mDirection, chunk.length);
+
+      // 第一块到达时就收起这一端的 LoadingView，剩余的分块继续插入到列表边缘；
+      // 预加载时没有展开 LoadingView，另一端可能正在加载，不能收起
+      final boolean collapse = first && mLoadingLayout.isLoading(mDirection);
+      final int loadingOffset = collapse ? mLoadingLayout.getTargetViewOffset() : 0;
+      if (collapse) {
+        mLoadingLayout.stopLoading(false);
+      }
+      restoreAnchor(mDirection, loadingOffset);
+    }
+
+    void onComplete() {
+      // 返回的条数不足一页，说明该方向已经没有更多数据
+      if (mReceived < PAGE_SIZE) {
+        if (mDirection == Direction.TOP) {
+          mMinId = mFromId;
+        } else {
+          mMaxId = mToId;
+        }
+      }
+      mLoadingLayout.setShowTopLoadingView(hasMoreOld());
+      mLoadingLayout.setShowBottomLoadingView(hasMoreNew());
+      finish();
+    }
+
+    void onError(Throwable throwable) {
+      finish();
+    }
+
+    /** 没有收到任何分块时 LoadingView 还展开着；分块期间被忽略的预加载在这里重新允许 */
+    private void finish() {
+      if (mLoadingLayout.isLoading(mDirection)) {
+        mLoadingLayout.stopLoading(true);
+      } else {
+        mLoadingLayout.rearmPrefetch();
+      }
+    }
+  }
+
+  /**
+   * 合并数据前记录第一个可见条目的 id 及其相对列表顶部的像素偏移，
+   * 以及当前已布局条目的范围（合并后、下一次布局前 LayoutManager 中的位置还未更新）。
+   */
+  private void captureAnchor() {
+    final RecyclerView.LayoutManager layoutManager = mRecyclerView.getLayoutManager();
+    final int childCount = (layoutManager != null) ? layoutManager.getChildCount() : 0;
+    final View child = (childCount > 0) ? layoutManager.getChildAt(0) : null;
+    final int position = (child != null) ? mRecyclerView.getChildAdapterPosition(child) : RecyclerView.NO_POSITION;
+    mHasAnchor = position != RecyclerView.NO_POSITION;
+    if (mHasAnchor) {
+      mAnchorId = mAdapter.getData().getId(position);
+      mAnchorOffset = layoutManager.getDecoratedTop(child) - mRecyclerView.getPaddingTop();
+      mFirstLaidOutPosition = position;
+      mLastLaidOutPosition = Math.max(position,
+          mRecyclerView.getChildAdapterPosition(layoutManager.getChildAt(childCount - 1)));
+    } else {
+      mFirstLaidOutPosition = 0;
+      mLastLaidOutPosition = mAdapter.getItemCount() - 1;
+    }
+  }
+
+  /**
+   * 滑动窗口：数据超过 mMaxWindowSize 时，从加载方向的另一端按整页删除远离可见区域的数据，
+   * 并更新 id 区间，被删除的数据之后可以通过另一端的 LoadingView 重新加载（通常直接命中缓存）。
+   * 另一端正在进行的加载接在裁剪前的边界之后，需要一起取消，否则合并后会留下空缺。
+   *
+   * @param loaded 刚刚合并进来的数据所在的一端
+   * @param count  刚刚合并进来的条数
+   */
+  private void trimWindow(@NonNull Direction loaded, int count) {
+    final int itemCount = mAdapter.getItemCount();
+    final int excess = itemCount - mMaxWindowSize;
+    if (mMaxWindowSize <= 0 || excess <= 0) {
+      return;
+    }
+    if (loaded == Direction.TOP) {
+      // 向前插入后，已布局的条目整体后移 count
+      final int trimmable = itemCount - 1 - (mLastLaidOutPosition + count) - PAGE_SIZE;
+      final int trimCount = getTrimCount(excess, trimmable);
+      if (trimCount > 0) {
+        mAdapter.removeLastData(trimCount);
+        mToId = mAdapter.getData().getLastId();
+        cancelLoad(Direction.BOTTOM);
+      }
+    } else {
+      final int trimmable = mFirstLaidOutPosition - PAGE_SIZE;
+      final int trimCount = getTrimCount(excess, trimmable);
+      if (trimCount > 0) {
+        mAdapter.removeFirstData(trimCount);
+        mFromId = mAdapter.getData().getFirstId();
+        cancelLoad(Direction.TOP);
+      }
+    }
+  }
+
+  private void cancelLoad(@NonNull Direction direction) {
+    mLoadCoordinator.cancel(direction);
+    if (mLoadingLayout.isLoading(direction)) {
+      mLoadingLayout.stopLoading(false);
+    }
+  }
+
+  /** 按整页裁剪，保证重新加载时的区间与缓存中的页一致；不超过可以删除的条数 */
+  private static int getTrimCount(int excess, int trimmable) {
+    final int pages = (excess + PAGE_SIZE - 1) / PAGE_SIZE;
+    return Math.min(pages, trimmable / PAGE_SIZE) * PAGE_SIZE;
+  }
+
+  /**
+   * 锚点条目按 id 找到合并后的位置，在下一次布局时回到原来的像素位置。
+   * LoadingView 收起后列表内容会移动 loadingOffset，锚点偏移需要抵消这段距离。
+   */
+  private void restoreAnchor(@NonNull Direction direction, int loadingOffset) {
+    if (!mHasAnchor) {
+      return;
+    }
+    mHasAnchor = false;
+    final int index = mAdapter.getData().indexOf(mAnchorId);
+    if (index >= 0) {
+      final int offset = (direction == Direction.TOP)
+          ? mAnchorOffset + loadingOffset : mAnchorOffset - loadingOffset;
+      ((LinearLayoutManager) mRecyclerView.getLayoutManager()).scrollToPositionWithOffset(index, offset);
+    }
   }
 }
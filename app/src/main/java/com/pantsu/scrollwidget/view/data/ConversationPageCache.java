@@ -0,0 +1,49 @@
+package com.pantsu.scrollwidget.view.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.pantsu.scrollwidget.core.PageFile;
+import com.pantsu.scrollwidget.core.PageLruCache;
+
+/**
+ * 一个会话的分页缓存：先查询进程内共享的已解码分页，再查询磁盘缓存，磁盘命中的页放回内存缓存。
+ * 以请求的 [from, to] 区间为键，get 可以在主线程调用。
+ */
+public class ConversationPageCache {
+
+  private final String mConversationId;
+  private final PageLruCache mMemoryCache;
+  private final PageFile mPageFile;
+
+  public ConversationPageCache(@NonNull String conversationId, @Nullable PageLruCache memoryCache,
+                               @Nullable PageFile pageFile) {
+    mConversationId = conversationId;
+    mMemoryCache = memoryCache;
+    mPageFile = pageFile;
+  }
+
+  @Nullable
+  public int[] get(int from, int to) {
+    int[] page = (mMemoryCache != null) ? mMemoryCache.get(mConversationId, from, to) : null;
+    if (page == null && mPageFile != null) {
+      page = mPageFile.get(from, to);
+      if (page != null && mMemoryCache != null) {
+        mMemoryCache.put(mConversationId, from, to, page);
+      }
+    }
+    return page;
+  }
+
+  public void put(int from, int to, @NonNull int[] page) {
+    if (page.length == 0) {
+      return;
+    }
+    if (mMemoryCache != null) {
+      mMemoryCache.put(mConversationId, from, to, page);
+    }
+    if (mPageFile != null) {
+      mPageFile.put(from, to, page);
+    }
+  }
+}
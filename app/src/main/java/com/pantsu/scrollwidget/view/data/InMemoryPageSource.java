@@ -0,0 +1,148 @@
+package com.pantsu.scrollwidget.view.data;
+
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * 本地模拟的数据源：[minId, maxId] 区间内的 id 连续，可以为向前/向后加载分别设置模拟耗时。
+ * 用于示例页面和测试，测试中可以传入 TestScheduler 控制耗时。
+ */
+public class InMemoryPageSource implements PageSource {
+
+  private final int mMinId;
+  private final int mMaxId;
+  private final Scheduler mDelayScheduler;
+  private long mBeforeDelayMs;
+  private long mAfterDelayMs;
+  /** 分块返回时每块的条数，<= 0 时整页返回 */
+  private int mChunkSize;
+
+  public InMemoryPageSource() {
+    this(Integer.MIN_VALUE, Integer.MAX_VALUE);
+  }
+
+  public InMemoryPageSource(int minId, int maxId) {
+    this(minId, maxId, Schedulers.computation());
+  }
+
+  public InMemoryPageSource(int minId, int maxId, @NonNull Scheduler delayScheduler) {
+    mMinId = minId;
+    mMaxId = maxId;
+    mDelayScheduler = delayScheduler;
+  }
+
+  /** 模拟加载耗时，around 使用两者中较小的一个 */
+  public void setDelays(long beforeDelayMs, long afterDelayMs) {
+    mBeforeDelayMs = beforeDelayMs;
+    mAfterDelayMs = afterDelayMs;
+  }
+
+  /** 模拟分块返回，模拟耗时平均分配到每一块上 */
+  public void setChunkSize(int chunkSize) {
+    mChunkSize = chunkSize;
+  }
+
+  @NonNull
+  @Override
+  public Single<int[]> before(int id, int count) {
+    final int to = beforeTo(id);
+    return delay(mBeforeDelayMs, beforeFrom(to, count), to);
+  }
+
+  @NonNull
+  @Override
+  public Single<int[]> after(int id, int count) {
+    final int from = afterFrom(id);
+    return delay(mAfterDelayMs, from, afterTo(from, count));
+  }
+
+  @NonNull
+  @Override
+  public Flowable<int[]> streamBefore(int id, int count) {
+    final int to = beforeTo(id);
+    final int from = beforeFrom(to, count);
+    return chunks(mBeforeDelayMs, from, to, false);
+  }
+
+  @NonNull
+  @Override
+  public Flowable<int[]> streamAfter(int id, int count) {
+    final int from = afterFrom(id);
+    return chunks(mAfterDelayMs, from, afterTo(from, count), true);
+  }
+
+  @NonNull
+  @Override
+  public Single<int[]> around(int id, int count) {
+    final int from = (int) Math.max((long) id - count / 2, mMinId);
+    final int to = (int) Math.min((long) from + count - 1, mMaxId);
+    return delay(Math.min(mBeforeDelayMs, mAfterDelayMs), from, to);
+  }
+
+  private int beforeTo(int id) {
+    return (int) Math.max((long) id - 1, (long) mMinId - 1);
+  }
+
+  private int beforeFrom(int to, int count) {
+    return (int) Math.max((long) to - count + 1, mMinId);
+  }
+
+  private int afterFrom(int id) {
+    return (int) Math.min((long) id + 1, (long) mMaxId + 1);
+  }
+
+  private int afterTo(int from, int count) {
+    return (int) Math.min((long) from + count - 1, mMaxId);
+  }
+
+  /**
+   * 把 [from, to] 分块返回，ascending 为 false 时从 to 一端开始；
+   * 每块在 delayMs / 块数 之后到达，整页的总耗时与不分块时相同。
+   */
+  private Flowable<int[]> chunks(long delayMs, int from, int to, boolean ascending) {
+    final long size = Math.max((long) to - from + 1, 0);
+    if (mChunkSize <= 0 || size <= mChunkSize) {
+      return delay(delayMs, from, to).toFlowable();
+    }
+    final int chunkSize = mChunkSize;
+    final int chunkCount = (int) ((size + chunkSize - 1) / chunkSize);
+    final long chunkDelayMs = delayMs / chunkCount;
+    return Flowable.range(0, chunkCount).concatMap(i -> {
+      final int chunkFrom;
+      final int chunkTo;
+      if (ascending) {
+        chunkFrom = from + i * chunkSize;
+        chunkTo = Math.min(chunkFrom + chunkSize - 1, to);
+      } else {
+        chunkTo = to - i * chunkSize;
+        chunkFrom = Math.max(chunkTo - chunkSize + 1, from);
+      }
+      return delay(chunkDelayMs, chunkFrom, chunkTo).toFlowable();
+    });
+  }
+
+  private Single<int[]> delay(long delayMs, int from, int to) {
+    if (delayMs <= 0) {
+      return Single.fromCallable(() -> range(from, to));
+    }
+    return Single
+        .timer(delayMs, TimeUnit.MILLISECONDS, mDelayScheduler)
+        .map(ignore -> range(from, to));
+  }
+
+  /** [from, to] 区间内的连续 id，from > to 时为空 */
+  @NonNull
+  static int[] range(int from, int to) {
+    int[] page = new int[(int) Math.max((long) to - from + 1, 0)];
+    for (int i = 0; i < page.length; ++i) {
+      page[i] = from + i;
+    }
+    return page;
+  }
+}
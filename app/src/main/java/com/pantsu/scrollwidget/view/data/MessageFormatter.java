@@ -0,0 +1,54 @@
+package com.pantsu.scrollwidget.view.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 在绑定时才生成消息的展示文本，内部复用同一个 StringBuilder。
+ * <p>
+ * 非线程安全，每个线程使用各自的实例。
+ */
+public class MessageFormatter {
+
+  static final int DEFAULT_CAPACITY = 48;
+
+  private static final String PREFIX = " 消息id=";
+
+  private final StringBuilder mBuilder = new StringBuilder(DEFAULT_CAPACITY);
+
+  @NonNull
+  public CharSequence format(int id, @Nullable CharSequence payload) {
+    if (payload != null) {
+      return payload;
+    }
+    build(id);
+    return mBuilder.toString();
+  }
+
+  /**
+   * 把 id 对应的默认文本写入 buffer，容量不足时返回新数组，否则原样返回；
+   * 文本长度通过 {@link #length()} 获取。
+   */
+  @NonNull
+  public char[] formatInto(int id, @NonNull char[] buffer) {
+    build(id);
+    final int length = mBuilder.length();
+    if (buffer.length < length) {
+      buffer = new char[Math.max(length, buffer.length * 2)];
+    }
+    mBuilder.getChars(0, length, buffer, 0);
+    return buffer;
+  }
+
+  /** 最近一次生成的文本长度 */
+  public int length() {
+    return mBuilder.length();
+  }
+
+  private void build(int id) {
+    mBuilder.setLength(0);
+    mBuilder.append(PREFIX).append(id)
+        .append(PREFIX).append(id)
+        .append(PREFIX).append(id);
+  }
+}
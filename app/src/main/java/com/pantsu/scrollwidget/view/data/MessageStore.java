@@ -0,0 +1,178 @@
+package com.pantsu.scrollwidget.view.data;
+
+import java.util.Arrays;
+
+import android.util.SparseArray;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.pantsu.scrollwidget.core.IntIntMap;
+
+/**
+ * 消息列表的紧凑存储：按展示顺序保存消息 id 的 int 数组，头尾两端都预留空间，
+ * 向前插入旧消息和向后追加新消息均为均摊 O(页大小)。
+ * <p>
+ * 消息正文等附加内容放在以 id 为下标的 payload 表里，没有 payload 的消息由
+ * {@link MessageFormatter} 在绑定时按 id 生成展示文本。
+ * <p>
+ * 每条消息在加入时分配一个序号，向前插入的序号递减、向后追加的递增，位置 = 序号 - 第一条的序号。
+ * id 到序号的映射只在消息加入时写入，因此向前插入一页不需要更新已有消息，{@link #indexOf(int)} 为 O(1)。
+ */
+public class MessageStore {
+
+  private static final int MIN_CAPACITY = 16;
+
+  private int[] mIds = new int[MIN_CAPACITY];
+  /** 第一条消息在 mIds 中的下标 */
+  private int mHead = MIN_CAPACITY / 2;
+  private int mSize;
+
+  /** 第一条消息的序号 */
+  private int mFirstSequence;
+  private final IntIntMap mSequences = new IntIntMap();
+
+  private final SparseArray<CharSequence> mPayloads = new SparseArray<>();
+
+  public int size() {
+    return mSize;
+  }
+
+  public boolean isEmpty() {
+    return mSize == 0;
+  }
+
+  public int getId(int position) {
+    if (position < 0 || position >= mSize) {
+      throw new IndexOutOfBoundsException("position=" + position + ", size=" + mSize);
+    }
+    return mIds[mHead + position];
+  }
+
+  public int getFirstId() {
+    return getId(0);
+  }
+
+  public int getLastId() {
+    return getId(mSize - 1);
+  }
+
+  /** id 对应的位置，不存在时返回 -1 */
+  public int indexOf(int id) {
+    if (!mSequences.containsKey(id)) {
+      return -1;
+    }
+    return mSequences.get(id, 0) - mFirstSequence;
+  }
+
+  /** 用 ids 替换全部内容 */
+  public void set(@NonNull int[] ids) {
+    final int capacity = Math.max(MIN_CAPACITY, ids.length * 2);
+    if (mIds.length < capacity) {
+      mIds = new int[capacity];
+    }
+    mHead = (mIds.length - ids.length) / 2;
+    mSize = ids.length;
+    System.arraycopy(ids, 0, mIds, mHead, ids.length);
+
+    mFirstSequence = 0;
+    mSequences.clear();
+    mSequences.ensureCapacity(ids.length);
+    for (int i = 0; i < ids.length; ++i) {
+      mSequences.put(ids[i], i);
+    }
+  }
+
+  /** 在头部插入一页较旧的消息，ids 按展示顺序排列 */
+  public void prepend(@NonNull int[] ids) {
+    if (ids.length == 0) {
+      return;
+    }
+    if (mHead < ids.length) {
+      reallocate(ids.length, 0);
+    }
+    mHead -= ids.length;
+    mSize += ids.length;
+    System.arraycopy(ids, 0, mIds, mHead, ids.length);
+
+    mFirstSequence -= ids.length;
+    for (int i = 0; i < ids.length; ++i) {
+      mSequences.put(ids[i], mFirstSequence + i);
+    }
+  }
+
+  /** 在尾部追加一页较新的消息，ids 按展示顺序排列 */
+  public void append(@NonNull int[] ids) {
+    if (ids.length == 0) {
+      return;
+    }
+    if (mIds.length - mHead - mSize < ids.length) {
+      reallocate(0, ids.length);
+    }
+    System.arraycopy(ids, 0, mIds, mHead + mSize, ids.length);
+    final int firstSequence = mFirstSequence + mSize;
+    for (int i = 0; i < ids.length; ++i) {
+      mSequences.put(ids[i], firstSequence + i);
+    }
+    mSize += ids.length;
+  }
+
+  /** 删除头部 count 条消息，同时删除它们的 payload */
+  public void removeFirst(int count) {
+    checkRemoveCount(count);
+    for (int i = 0; i < count; ++i) {
+      forget(mIds[mHead + i]);
+    }
+    mHead += count;
+    mSize -= count;
+    mFirstSequence += count;
+  }
+
+  /** 删除尾部 count 条消息，同时删除它们的 payload */
+  public void removeLast(int count) {
+    checkRemoveCount(count);
+    for (int i = mSize - count; i < mSize; ++i) {
+      forget(mIds[mHead + i]);
+    }
+    mSize -= count;
+  }
+
+  private void checkRemoveCount(int count) {
+    if (count < 0 || count > mSize) {
+      throw new IndexOutOfBoundsException("count=" + count + ", size=" + mSize);
+    }
+  }
+
+  private void forget(int id) {
+    mSequences.remove(id);
+    mPayloads.remove(id);
+  }
+
+  @NonNull
+  public int[] toArray() {
+    return Arrays.copyOfRange(mIds, mHead, mHead + mSize);
+  }
+
+  public void putPayload(int id, @NonNull CharSequence payload) {
+    mPayloads.put(id, payload);
+  }
+
+  public void removePayload(int id) {
+    mPayloads.remove(id);
+  }
+
+  @Nullable
+  public CharSequence getPayload(int id) {
+    return mPayloads.get(id);
+  }
+
+  /** 扩容，并在头部/尾部至少预留 headRoom/tailRoom 个空位 */
+  private void reallocate(int headRoom, int tailRoom) {
+    final int spare = Math.max(mSize, MIN_CAPACITY);
+    final int head = Math.max(headRoom, tailRoom == 0 ? spare : spare / 2);
+    final int tail = Math.max(tailRoom, headRoom == 0 ? spare : spare / 2);
+    int[] ids = new int[head + mSize + tail];
+    System.arraycopy(mIds, mHead, ids, head, mSize);
+    mIds = ids;
+    mHead = head;
+  }
+}
@@ -1,43 +1,253 @@
 package com.pantsu.scrollwidget.view.data;
 
-import java.util.ArrayList;
-import java.util.List;
-
+import android.util.SparseIntArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
+import androidx.annotation.LayoutRes;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.pantsu.scrollwidget.R;
 
+import io.reactivex.Single;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
 public class MyListAdapter extends RecyclerView.Adapter<MyListAdapter.TextViewHolder> {
 
-  private List<String> mData = new ArrayList<>();
+  /** 默认的文本消息类型，对应 {@code R.layout.item_text_main} */
+  public static final int VIEW_TYPE_TEXT = 0;
+
+  private static final int MAX_RECYCLED_TEXT_VIEWS = 20;
+
+  /**
+   * 创建可在多个列表（例如多个 NestedScrollLoadingLayout）之间共用的回收池，快速滑动和切换会话可以直接复用已创建的 ViewHolder。
+   * 池中的 ViewHolder 持有创建时的 Context，回收池应由持有这些列表的页面保存，页面销毁时调用
+   * {@link RecyclerView.RecycledViewPool#clear()}，不要保存在静态变量中。
+   */
+  @NonNull
+  public static RecyclerView.RecycledViewPool createSharedViewPool() {
+    final RecyclerView.RecycledViewPool pool = new RecyclerView.RecycledViewPool();
+    pool.setMaxRecycledViews(VIEW_TYPE_TEXT, MAX_RECYCLED_TEXT_VIEWS);
+    return pool;
+  }
 
-  public void setData(List<String> data) {
-    mData = data;
+  public interface ViewTypeLookup {
+    int getViewType(int id, @Nullable CharSequence payload);
   }
 
-  public List<String> getData() {
+  /** view type -> 布局，布局中必须包含 id 为 text 的 TextView */
+  private final SparseIntArray mViewTypeLayouts = new SparseIntArray();
+  private ViewTypeLookup mViewTypeLookup;
+
+  private final MessageStore mData = new MessageStore();
+  private final MessageFormatter mFormatter = new MessageFormatter();
+  private final PrecomputedTextCache mPrecomputedTexts = new PrecomputedTextCache();
+  private boolean mPrecomputeText;
+
+  /** 每次修改 mData 时自增，用于丢弃基于旧数据算出的 diff 结果 */
+  private int mDataVersion;
+  private Disposable mDiffDisposable;
+
+  public MyListAdapter() {
+    setHasStableIds(true);
+    mViewTypeLayouts.put(VIEW_TYPE_TEXT, R.layout.item_text_main);
+  }
+
+  public void registerViewType(int viewType, @LayoutRes int layoutId) {
+    mViewTypeLayouts.put(viewType, layoutId);
+  }
+
+  /** 为 null 时所有消息都使用 {@link #VIEW_TYPE_TEXT} */
+  public void setViewTypeLookup(@Nullable ViewTypeLookup viewTypeLookup) {
+    mViewTypeLookup = viewTypeLookup;
+  }
+
+  /**
+   * 开启后，新数据到达时在后台预先测量文本布局，绑定时直接使用，适合长文本多行消息。
+   * 只作用于 {@link #VIEW_TYPE_TEXT}，其他类型的文本样式可能不同。
+   */
+  public void setPrecomputeText(boolean precomputeText) {
+    mPrecomputeText = precomputeText;
+    if (!precomputeText) {
+      mPrecomputedTexts.clear();
+    }
+  }
+
+  /**
+   * 任意变更：在后台线程计算 diff，主线程只负责应用结果（类似 AsyncListDiffer）。
+   * 后一次提交会取消前一次尚未完成的计算。
+   */
+  public void submitData(@NonNull int[] newData) {
+    cancelPendingDiff();
+    if (mData.isEmpty() || newData.length == 0) {
+      final int oldSize = mData.size();
+      mData.set(newData);
+      ++mDataVersion;
+      onDataReplaced(newData);
+      if (oldSize > 0) {
+        notifyItemRangeRemoved(0, oldSize);
+      }
+      if (newData.length > 0) {
+        notifyItemRangeInserted(0, newData.length);
+      }
+      return;
+    }
+
+    final int[] snapshot = mData.toArray();
+    final int version = mDataVersion;
+    mDiffDisposable = Single
+        .fromCallable(() -> DiffUtil.calculateDiff(new DataDiffCallback(snapshot, newData)))
+        .subscribeOn(Schedulers.computation())
+        .observeOn(AndroidSchedulers.mainThread())
+        .subscribe(result -> {
+          mDiffDisposable = null;
+          if (version != mDataVersion) {
+            // 计算期间数据被增量修改过，diff 已失效，基于最新数据重新计算
+            submitData(newData);
+            return;
+          }
+          mData.set(newData);
+          ++mDataVersion;
+          onDataReplaced(newData);
+          result.dispatchUpdatesTo(this);
+        });
+  }
+
+  /** 在列表头部插入一页较旧的数据 */
+  public void prependData(@NonNull int[] page) {
+    if (page.length == 0) {
+      return;
+    }
+    mData.prepend(page);
+    ++mDataVersion;
+    onDataInserted(page);
+    notifyItemRangeInserted(0, page.length);
+  }
+
+  /** 在列表尾部追加一页较新的数据 */
+  public void appendData(@NonNull int[] page) {
+    if (page.length == 0) {
+      return;
+    }
+    final int start = mData.size();
+    mData.append(page);
+    ++mDataVersion;
+    onDataInserted(page);
+    notifyItemRangeInserted(start, page.length);
+  }
+
+  /** 删除头部 count 条数据，用于滑动窗口裁剪 */
+  public void removeFirstData(int count) {
+    if (count <= 0) {
+      return;
+    }
+    for (int i = 0; i < count; ++i) {
+      mPrecomputedTexts.remove(mData.getId(i));
+    }
+    mData.removeFirst(count);
+    ++mDataVersion;
+    notifyItemRangeRemoved(0, count);
+  }
+
+  /** 删除尾部 count 条数据，用于滑动窗口裁剪 */
+  public void removeLastData(int count) {
+    if (count <= 0) {
+      return;
+    }
+    final int start = mData.size() - count;
+    for (int i = start; i < mData.size(); ++i) {
+      mPrecomputedTexts.remove(mData.getId(i));
+    }
+    mData.removeLast(count);
+    ++mDataVersion;
+    notifyItemRangeRemoved(start, count);
+  }
+
+  @NonNull
+  public MessageStore getData() {
     return mData;
   }
 
+  private void onDataInserted(@NonNull int[] ids) {
+    if (mPrecomputeText) {
+      mPrecomputedTexts.precompute(mData, ids);
+    }
+  }
+
+  private void onDataReplaced(@NonNull int[] ids) {
+    if (mPrecomputeText) {
+      mPrecomputedTexts.clear();
+      mPrecomputedTexts.precompute(mData, ids);
+    }
+  }
+
+  private void cancelPendingDiff() {
+    if (mDiffDisposable != null) {
+      mDiffDisposable.dispose();
+      mDiffDisposable = null;
+    }
+  }
+
+  @Override
+  public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+    super.onDetachedFromRecyclerView(recyclerView);
+    cancelPendingDiff();
+    mPrecomputedTexts.clear();
+  }
+
+  @Override
+  public int getItemViewType(int position) {
+    if (mViewTypeLookup == null) {
+      return VIEW_TYPE_TEXT;
+    }
+    final int id = mData.getId(position);
+    return mViewTypeLookup.getViewType(id, mData.getPayload(id));
+  }
+
+  @Override
+  public long getItemId(int position) {
+    return mData.getId(position);
+  }
+
   @NonNull
   @Override
   public TextViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-    View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_text_main, parent, false);
-    return new TextViewHolder(view);
+    final int layoutId = mViewTypeLayouts.get(viewType, R.layout.item_text_main);
+    View view = LayoutInflater.from(parent.getContext()).inflate(layoutId, parent, false);
+    TextViewHolder holder = new TextViewHolder(view);
+    if (mPrecomputeText && viewType == VIEW_TYPE_TEXT && !mPrecomputedTexts.hasParams()) {
+      // 第一次拿到 TextView 时才知道测量参数，补算已有数据
+      mPrecomputedTexts.setParams(TextViewCompat.getTextMetricsParams(holder.mTextView));
+      mPrecomputedTexts.precompute(mData, mData.toArray());
+    }
+    return holder;
   }
 
+  /** 绑定过程不分配对象，也不请求重新布局：条目宽高由布局文件固定 */
   @Override
   public void onBindViewHolder(@NonNull TextViewHolder holder, int position) {
-    TextView textView = holder.itemView.findViewById(R.id.text);
-    textView.setText(mData.get(position));
-
-    holder.itemView.getLayoutParams().width = ViewGroup.LayoutParams.MATCH_PARENT;
-    holder.itemView.requestLayout();
+    final int id = mData.getId(position);
+    PrecomputedTextCompat precomputedText = (mPrecomputeText && holder.getItemViewType() == VIEW_TYPE_TEXT)
+        ? mPrecomputedTexts.get(id) : null;
+    if (precomputedText != null) {
+      TextViewCompat.setPrecomputedText(holder.mTextView, precomputedText);
+      return;
+    }
+    final CharSequence payload = mData.getPayload(id);
+    if (payload != null) {
+      holder.mTextView.setText(payload);
+    } else {
+      holder.mTextBuffer = mFormatter.formatInto(id, holder.mTextBuffer);
+      holder.mTextView.setText(holder.mTextBuffer, 0, mFormatter.length());
+    }
   }
 
   @Override
@@ -46,9 +256,44 @@ public class MyListAdapter extends RecyclerView.Adapter<MyListAdapter.TextViewHo
   }
 
   static class TextViewHolder extends RecyclerView.ViewHolder {
+    final TextView mTextView;
+    /** TextView 会直接引用这个数组，每个 ViewHolder 独占一份，只在下次 setText 前改写 */
+    char[] mTextBuffer = new char[MessageFormatter.DEFAULT_CAPACITY];
+
     public TextViewHolder(@NonNull View itemView) {
       super(itemView);
+      mTextView = itemView.findViewById(R.id.text);
     }
   }
-}
 
+  private static class DataDiffCallback extends DiffUtil.Callback {
+    private final int[] mOldData;
+    private final int[] mNewData;
+
+    DataDiffCallback(int[] oldData, int[] newData) {
+      mOldData = oldData;
+      mNewData = newData;
+    }
+
+    @Override
+    public int getOldListSize() {
+      return mOldData.length;
+    }
+
+    @Override
+    public int getNewListSize() {
+      return mNewData.length;
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+      return mOldData[oldItemPosition] == mNewData[newItemPosition];
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+      // 展示内容由 id 和 payload 表决定，payload 变化时由调用方单独通知
+      return true;
+    }
+  }
+}
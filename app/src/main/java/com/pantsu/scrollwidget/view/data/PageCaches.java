@@ -0,0 +1,86 @@
+package com.pantsu.scrollwidget.view.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import android.content.Context;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.pantsu.scrollwidget.core.PageFile;
+import com.pantsu.scrollwidget.core.PageLruCache;
+
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * 进程内共享的分页缓存
+ */
+public final class PageCaches {
+
+  private static final String PAGE_FILE_DIR = "pages";
+  private static final String PAGE_FILE_SUFFIX = ".bin";
+  /** 单个会话的磁盘缓存上限 */
+  private static final long MAX_PAGE_FILE_BYTES = 1024 * 1024;
+  /** 内存中最多保留的消息条数，约 100 页 */
+  private static final long MAX_MEMORY_CACHE_ITEMS = 2000;
+
+  private static final PageLruCache sMemoryCache =
+      new PageLruCache(PageLruCache.Bound.ITEMS, MAX_MEMORY_CACHE_ITEMS);
+
+  /** 会话 id -> 磁盘缓存，打开失败的会话对应 null */
+  private static final Map<String, PageFile> sPageFiles = new HashMap<>();
+
+  private PageCaches() {
+  }
+
+  /** 已解码分页的内存缓存，所有 PageList 共用，可通过 {@link PageLruCache#getStats()} 查看命中与淘汰情况 */
+  @NonNull
+  public static PageLruCache getMemoryCache() {
+    return sMemoryCache;
+  }
+
+  /** 会话 conversationId 的分页缓存，使用共享的内存缓存和该会话自己的磁盘缓存 */
+  @NonNull
+  public static ConversationPageCache forConversation(@NonNull Context context, @NonNull String conversationId) {
+    return new ConversationPageCache(conversationId, getMemoryCache(), getPageFile(context, conversationId));
+  }
+
+  /**
+   * 会话 conversationId 的磁盘分页缓存。PageFile 只以 [from, to] 为键，每个会话使用单独的文件，
+   * 不同会话相同区间的页不会互相覆盖。随进程存在不关闭；打开失败时返回 null，按无缓存处理。
+   * 打开时只映射文件并扫描记录头，可以在主线程调用。
+   */
+  @Nullable
+  public static synchronized PageFile getPageFile(@NonNull Context context, @NonNull String conversationId) {
+    if (sPageFiles.containsKey(conversationId)) {
+      return sPageFiles.get(conversationId);
+    }
+    PageFile pageFile;
+    File dir = new File(context.getApplicationContext().getCacheDir(), PAGE_FILE_DIR);
+    try {
+      if (!dir.isDirectory() && !dir.mkdirs()) {
+        throw new IOException("cannot create " + dir);
+      }
+      File file = new File(dir, toFileName(conversationId) + PAGE_FILE_SUFFIX);
+      pageFile = PageFile.open(file, MAX_PAGE_FILE_BYTES, Schedulers.io()::scheduleDirect);
+    } catch (IOException e) {
+      pageFile = null;
+    }
+    sPageFiles.put(conversationId, pageFile);
+    return pageFile;
+  }
+
+  /** 会话 id 按 UTF-8 字节转为十六进制，保证文件名合法且不同会话不会映射到同一个文件 */
+  @NonNull
+  private static String toFileName(@NonNull String conversationId) {
+    final byte[] bytes = conversationId.getBytes(StandardCharsets.UTF_8);
+    final StringBuilder name = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return name.toString();
+  }
+}
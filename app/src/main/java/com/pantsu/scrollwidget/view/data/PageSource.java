@@ -0,0 +1,47 @@
+package com.pantsu.scrollwidget.view.data;
+
+import androidx.annotation.NonNull;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+
+/**
+ * 分页数据源，返回的每一页都是按展示顺序（从旧到新）排列的消息 id。
+ * <p>
+ * 实现方只负责描述如何获取数据，不需要指定线程：{@code PageList} 会在调用方提供的 IO 线程上订阅。
+ * 返回的条数少于 count 表示该方向已经没有更多数据。
+ * <p>
+ * 较慢的数据源可以重写 stream 方法分块返回，{@code PageList} 收到第一块后就会显示出来。
+ */
+public interface PageSource {
+
+  /** id 之前（不含 id）最多 count 条较旧的消息 */
+  @NonNull
+  Single<int[]> before(int id, int count);
+
+  /** id 之后（不含 id）最多 count 条较新的消息 */
+  @NonNull
+  Single<int[]> after(int id, int count);
+
+  /** 以 id 为中心的最多 count 条消息，用于首次打开或跳转 */
+  @NonNull
+  Single<int[]> around(int id, int count);
+
+  /**
+   * 分块返回 {@link #before(int, int)} 的结果：先返回靠近 id 的较新消息，每一块内部按展示顺序排列。
+   * 默认整页作为一块返回。
+   */
+  @NonNull
+  default Flowable<int[]> streamBefore(int id, int count) {
+    return before(id, count).toFlowable();
+  }
+
+  /**
+   * 分块返回 {@link #after(int, int)} 的结果：先返回靠近 id 的较旧消息，每一块内部按展示顺序排列。
+   * 默认整页作为一块返回。
+   */
+  @NonNull
+  default Flowable<int[]> streamAfter(int id, int count) {
+    return after(id, count).toFlowable();
+  }
+}
@@ -0,0 +1,100 @@
+package com.pantsu.scrollwidget.view.data;
+
+import android.util.LruCache;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.text.PrecomputedTextCompat;
+
+import io.reactivex.Single;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.observers.DisposableSingleObserver;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * 在后台线程预先完成消息文本的测量和断行，按消息 id 缓存 {@link PrecomputedTextCompat}，
+ * 绑定时直接挂到 TextView 上，不再占用滑动时的帧时间。只在主线程调用。
+ */
+public class PrecomputedTextCache {
+
+  /** 最多缓存的消息条数，超出时淘汰最久未使用的；滑动窗口裁剪时也会逐条删除 */
+  private static final int MAX_TEXTS = 500;
+
+  private final LruCache<Integer, PrecomputedTextCompat> mTexts = new LruCache<>(MAX_TEXTS);
+  /** 只保存进行中的计算，完成后立即移除 */
+  private final CompositeDisposable mDisposables = new CompositeDisposable();
+  private PrecomputedTextCompat.Params mParams;
+  /** clear() 时自增，丢弃清空前发起的计算结果 */
+  private int mGeneration;
+
+  /** 测量参数必须与绑定目标 TextView 的参数一致，否则 setPrecomputedText 会抛异常 */
+  public void setParams(@NonNull PrecomputedTextCompat.Params params) {
+    mParams = params;
+  }
+
+  public boolean hasParams() {
+    return mParams != null;
+  }
+
+  @Nullable
+  public PrecomputedTextCompat get(int id) {
+    return mTexts.get(id);
+  }
+
+  public void remove(int id) {
+    mTexts.remove(id);
+  }
+
+  /** 预计算 ids 对应消息的文本布局，payload 在调用线程读取，计算在 computation 线程进行 */
+  public void precompute(@NonNull MessageStore store, @NonNull int[] ids) {
+    if (mParams == null || ids.length == 0) {
+      return;
+    }
+    final CharSequence[] payloads = new CharSequence[ids.length];
+    for (int i = 0; i < ids.length; ++i) {
+      payloads[i] = store.getPayload(ids[i]);
+    }
+    final PrecomputedTextCompat.Params params = mParams;
+    final int generation = mGeneration;
+    final DisposableSingleObserver<PrecomputedTextCompat[]> observer = new DisposableSingleObserver<PrecomputedTextCompat[]>() {
+      @Override
+      public void onSuccess(@NonNull PrecomputedTextCompat[] texts) {
+        mDisposables.delete(this);
+        if (generation != mGeneration) {
+          return;
+        }
+        for (int i = 0; i < ids.length; ++i) {
+          // 计算期间可能已经被滑动窗口裁剪掉
+          if (store.indexOf(ids[i]) >= 0) {
+            mTexts.put(ids[i], texts[i]);
+          }
+        }
+      }
+
+      @Override
+      public void onError(@NonNull Throwable e) {
+        // 预计算失败时绑定时按普通文本处理
+        mDisposables.delete(this);
+      }
+    };
+    mDisposables.add(observer);
+    Single
+        .fromCallable(() -> {
+          MessageFormatter formatter = new MessageFormatter();
+          PrecomputedTextCompat[] texts = new PrecomputedTextCompat[ids.length];
+          for (int i = 0; i < ids.length; ++i) {
+            texts[i] = PrecomputedTextCompat.create(formatter.format(ids[i], payloads[i]), params);
+          }
+          return texts;
+        })
+        .subscribeOn(Schedulers.computation())
+        .observeOn(AndroidSchedulers.mainThread())
+        .subscribe(observer);
+  }
+
+  public void clear() {
+    ++mGeneration;
+    mDisposables.clear();
+    mTexts.evictAll();
+  }
+}
@@ -0,0 +1,200 @@
+package com.pantsu.scrollwidget.view.view;
+
+import android.util.Log;
+import android.view.View;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.pantsu.scrollwidget.core.LoadingStateMachine;
+
+/**
+ * 缓存滚动目标是否已到达顶部/底部，触摸和嵌套滚动的热路径只读取缓存，不再每个事件调用 canScrollVertically。
+ * <p>
+ * 内容每滚动一次只有一侧的结果可能改变：向上滚动内容（dy > 0）后一定不在顶部，只需要在下次查询时重新探测底部，反之亦然；
+ * 布局变化、数据变化或切换滚动目标后两侧都重新探测。
+ * RecyclerView 通过 OnScrollListener 获取滚动距离，其他滚动目标由调用方通过 {@link #onScrolled(int)} 传入。
+ * <p>
+ * 开启校验后每次读取缓存都会与 canScrollVertically 的真实结果比对，不一致时打印日志并以真实结果为准。
+ */
+final class EdgeTracker implements LoadingStateMachine.EdgeState {
+
+  private static final String TAG = "EdgeTracker";
+
+  private View mTarget;
+  private RecyclerView.Adapter<?> mAdapter;
+  @Nullable
+  private Runnable mOnDataChanged;
+
+  private boolean mAtTop;
+  private boolean mAtBottom;
+  private boolean mTopDirty = true;
+  private boolean mBottomDirty = true;
+
+  private boolean mVerify;
+  private int mMismatchCount;
+
+  private final RecyclerView.OnScrollListener mOnScrollListener = new RecyclerView.OnScrollListener() {
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+      // 布局完成后 RecyclerView 会回调 (0, 0)，此时可见范围可能已经变化
+      if (dx == 0 && dy == 0) {
+        invalidate();
+      } else {
+        EdgeTracker.this.onScrolled(dy);
+      }
+    }
+  };
+
+  private final RecyclerView.AdapterDataObserver mDataObserver = new RecyclerView.AdapterDataObserver() {
+    @Override
+    public void onChanged() {
+      onDataChanged();
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount) {
+      onDataChanged();
+    }
+
+    @Override
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+      onDataChanged();
+    }
+
+    @Override
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+      onDataChanged();
+    }
+
+    @Override
+    public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+      onDataChanged();
+    }
+  };
+
+  private final View.OnLayoutChangeListener mOnLayoutChangeListener = new View.OnLayoutChangeListener() {
+    @Override
+    public void onLayoutChange(View v, int left, int top, int right, int bottom,
+        int oldLeft, int oldTop, int oldRight, int oldBottom) {
+      invalidate();
+      // setAdapter 之后一定会重新布局，在这里跟上 Adapter 的切换
+      if (v instanceof RecyclerView) {
+        observeAdapter(((RecyclerView) v).getAdapter());
+      }
+    }
+  };
+
+  /** 切换滚动目标，同一个目标重复设置时不做任何事 */
+  void setTarget(@Nullable View target) {
+    if (mTarget == target) {
+      return;
+    }
+    if (mTarget != null) {
+      mTarget.removeOnLayoutChangeListener(mOnLayoutChangeListener);
+      if (mTarget instanceof RecyclerView) {
+        ((RecyclerView) mTarget).removeOnScrollListener(mOnScrollListener);
+      }
+      observeAdapter(null);
+    }
+    mTarget = target;
+    if (target != null) {
+      target.addOnLayoutChangeListener(mOnLayoutChangeListener);
+      if (target instanceof RecyclerView) {
+        ((RecyclerView) target).addOnScrollListener(mOnScrollListener);
+        observeAdapter(((RecyclerView) target).getAdapter());
+      }
+    }
+    invalidate();
+  }
+
+  private void observeAdapter(@Nullable RecyclerView.Adapter<?> adapter) {
+    if (mAdapter == adapter) {
+      return;
+    }
+    if (mAdapter != null) {
+      mAdapter.unregisterAdapterDataObserver(mDataObserver);
+    }
+    mAdapter = adapter;
+    if (adapter != null) {
+      adapter.registerAdapterDataObserver(mDataObserver);
+    }
+    invalidate();
+  }
+
+  /** RecyclerView 的数据发生变化时回调 */
+  void setOnDataChangedListener(@Nullable Runnable onDataChanged) {
+    mOnDataChanged = onDataChanged;
+  }
+
+  private void onDataChanged() {
+    invalidate();
+    if (mOnDataChanged != null) {
+      mOnDataChanged.run();
+    }
+  }
+
+  /** 是否由 RecyclerView 的 OnScrollListener 自动跟踪滚动距离 */
+  boolean isTrackingScroll() {
+    return mTarget instanceof RecyclerView;
+  }
+
+  /** 内容滚动了 dy（向上滚动内容为正） */
+  void onScrolled(int dy) {
+    if (dy > 0) {
+      mAtTop = false;
+      mTopDirty = false;
+      mBottomDirty = true;
+    } else if (dy < 0) {
+      mAtBottom = false;
+      mBottomDirty = false;
+      mTopDirty = true;
+    }
+  }
+
+  /** 下次查询时重新探测两侧 */
+  void invalidate() {
+    mTopDirty = true;
+    mBottomDirty = true;
+  }
+
+  /** 调试用：每次读取缓存都与真实结果比对 */
+  void setVerifyEnabled(boolean verify) {
+    mVerify = verify;
+  }
+
+  /** 开启校验后缓存与真实结果不一致的次数 */
+  int getMismatchCount() {
+    return mMismatchCount;
+  }
+
+  @Override
+  public boolean isAtTop() {
+    if (mTopDirty) {
+      mAtTop = !mTarget.canScrollVertically(-1);
+      mTopDirty = false;
+    } else if (mVerify) {
+      mAtTop = verify("top", mAtTop, !mTarget.canScrollVertically(-1));
+    }
+    return mAtTop;
+  }
+
+  @Override
+  public boolean isAtBottom() {
+    if (mBottomDirty) {
+      mAtBottom = !mTarget.canScrollVertically(1);
+      mBottomDirty = false;
+    } else if (mVerify) {
+      mAtBottom = verify("bottom", mAtBottom, !mTarget.canScrollVertically(1));
+    }
+    return mAtBottom;
+  }
+
+  private boolean verify(@NonNull String edge, boolean cached, boolean actual) {
+    if (cached != actual) {
+      ++mMismatchCount;
+      Log.w(TAG, "stale " + edge + " edge state: cached=" + cached + ", actual=" + actual + ", target=" + mTarget);
+    }
+    return actual;
+  }
+}
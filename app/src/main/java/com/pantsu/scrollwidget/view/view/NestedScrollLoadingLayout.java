@@ -3,84 +3,107 @@ package com.pantsu.scrollwidget.view.view;
 import java.util.ArrayList;
 import java.util.List;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.ValueAnimator;
 import android.content.Context;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewConfiguration;
-import android.view.ViewTreeObserver;
-import android.widget.LinearLayout;
+import android.view.ViewGroup;
+import android.widget.OverScroller;
 import androidx.annotation.NonNull;
 import androidx.core.view.NestedScrollingChild2;
-import androidx.core.view.NestedScrollingParent2;
+import androidx.core.view.NestedScrollingChild3;
+import androidx.core.view.NestedScrollingParent3;
 import androidx.core.view.NestedScrollingParentHelper;
 import androidx.core.view.ViewCompat;
+import androidx.core.widget.NestedScrollView;
+import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.pantsu.scrollwidget.R;
+import com.pantsu.scrollwidget.core.Edge;
+import com.pantsu.scrollwidget.core.LoadingStateMachine;
+import com.pantsu.scrollwidget.core.OffsetAnimation;
 
-public class NestedScrollLoadingLayout extends LinearLayout implements NestedScrollingParent2 {
+/**
+ * 上下两个 LoadingView 之间放任意一个支持 {@link NestedScrollingChild3} 的滚动控件，
+ * 例如 RecyclerView、NestedScrollView 或自定义的滚动控件。
+ * 列表滚动到边界后剩余的距离通过嵌套滚动交给 LoadingView，并在 {@link #onNestedScroll(View, int, int, int, int, int, int[])} 中报告实际消费的距离。
+ * <p>
+ * FLING 到达边界时由 LoadingView 接管剩余速度，并停止列表的 FLING：RecyclerView 和 NestedScrollView 直接停止，
+ * 其他滚动控件只会收到 stopNestedScroll(TYPE_NON_TOUCH)，需要自行在此时停止 FLING。
+ */
+public class NestedScrollLoadingLayout extends ViewGroup implements NestedScrollingParent3 {
 
   private static final long ANIMATE_TO_START_DURATION = 300L;
+  private static final long FRAME_INTERVAL_MS = 16L;
+  private static final long DEFAULT_PREFETCH_LEAD_TIME = 300L;
 
   private long mAnimateToLoadDuration = ANIMATE_TO_START_DURATION;
 
-  private RecyclerView mTargetView;
+  /** 两个 LoadingView 之间的子 View */
+  private View mTargetView;
   private View mTopLoadingView;
   private View mBottomLoadingView;
-  private boolean mShowTopLoadingView = true;
-  private boolean mShowBottomLoadingView = true;
 
-  private int mTopViewHeight;
-  private int mBottomViewHeight;
-  private int mStartPosition;
-  private int mTopPosition;
-  private int mBottomPosition;
+  /** 跟踪当前嵌套滚动的发起者（可能是 mTargetView 内部的子 View）是否到达边界 */
+  private final EdgeTracker mEdgeTracker = new EdgeTracker();
+  /** 位置计算与状态切换都交给纯 Java 的状态机，这里只负责把结果应用到 View 上 */
+  private final LoadingStateMachine mState = new LoadingStateMachine(mEdgeTracker);
 
   private NestedScrollingParentHelper mNestedScrollHelper;
   private int mTouchSlop;
-  private float mLastTouchY;
-  private ScrollState mScrollState = ScrollState.NONE;
-
-  private boolean mIsLoading;
-  private Direction mLoadingDirection;
-  private Animator mAnimator;
-
-  private int mLastScrollState;
-  private int mLastScrollDeltaY;
+  private int mMaxFlingVelocity;
+  /** 与列表的 FLING 同时开始，到达边界时从这里读取列表剩余的速度 */
+  private final OverScroller mTargetFling;
+  /** onNestedScroll(..., int type) 转发到 Parent3 版本时使用 */
+  private final int[] mScrollConsumed = new int[2];
+
+  /** 加载与回弹共用的动画驱动，动画结束后根据 mNotifyLoadOnEnd 决定是否通知加载 */
+  private final OffsetAnimator mAnimator = new OffsetAnimator(new OffsetAnimator.Callback() {
+    @Override
+    public void onOffsetUpdate(int offset) {
+      setPosition(offset);
+    }
 
-  private RecyclerView.OnScrollListener mOnScrollListener = new RecyclerView.OnScrollListener() {
     @Override
-    public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
-      if (newState == RecyclerView.SCROLL_STATE_IDLE) {
-        // 场景1：通过 FLING 滑动到列表边界，需要弹出 LoadingView
-        if (mLastScrollState == RecyclerView.SCROLL_STATE_SETTLING) {
-          if (mLastScrollDeltaY < 0 && !recyclerView.canScrollVertically(-1)) {
-            startLoading(Direction.TOP, true);
-          } else if (mLastScrollDeltaY > 0 && !recyclerView.canScrollVertically(1)) {
-            startLoading(Direction.BOTTOM, true);
-          }
-        }
-        // 场景2：通过 DRAG 滑动到列表边界，并且已经显示 LoadingView，需要弹出 LoadingView
-        int diff = Math.abs(getPosition() - mStartPosition);
-        if (diff < mTouchSlop) {
-          resetToStartPosition(false);
-        } else {
-          Direction direction = getTargetLoadDirection();
-          startLoading(direction, true);
-        }
+    public void onAnimationEnd(boolean canceled) {
+      if (mScrollTracer != null) {
+        mScrollTracer.onAnimationFinished(mAnimator.getDurationMs(),
+            System.nanoTime() - mAnimationStartNanos, canceled);
+      }
+      final boolean notifyLoad = mNotifyLoadOnEnd && !canceled;
+      mNotifyLoadOnEnd = false;
+      if (notifyLoad) {
+        notifyLoadEvent();
       }
-
-      mLastScrollState = newState;
     }
+  });
+  private boolean mNotifyLoadOnEnd;
+  private long mAnimationStartNanos;
+
+  private OffsetMode mOffsetMode = OffsetMode.SCROLL;
+
+  private ScrollTracer mScrollTracer;
+  private final ScrollTracer.GestureMetrics mGestureMetrics = new ScrollTracer.GestureMetrics();
+  private long mLoadStartNanos;
+
+  /** 预加载距离（条目数），<= 0 时关闭预加载 */
+  private int mPrefetchDistance;
+  private long mPrefetchLeadTime = DEFAULT_PREFETCH_LEAD_TIME;
+  /**
+   * 触发预加载后不再重复通知同一边界，直到加载结束或数据变化。
+   * 滑动窗口裁剪后条目总数可能不变，所以不能用条目总数判断
+   */
+  private boolean mPrefetchTopArmed = true;
+  private boolean mPrefetchBottomArmed = true;
 
+  /** 只有 RecyclerView 支持预加载 */
+  private RecyclerView.OnScrollListener mOnScrollListener = new RecyclerView.OnScrollListener() {
     @Override
     public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
-      mLastScrollDeltaY = dy;
+      if (mPrefetchDistance > 0 && dy != 0) {
+        checkPrefetch(recyclerView, dy);
+      }
     }
   };
 
@@ -91,84 +114,236 @@ public class NestedScrollLoadingLayout extends LinearLayout implements NestedScr
 
   public NestedScrollLoadingLayout(Context context, AttributeSet attrs) {
     super(context, attrs);
-    mTouchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+    final ViewConfiguration configuration = ViewConfiguration.get(context);
+    mTouchSlop = configuration.getScaledTouchSlop();
+    mMaxFlingVelocity = configuration.getScaledMaximumFlingVelocity();
+    mTargetFling = new OverScroller(context);
     mNestedScrollHelper = new NestedScrollingParentHelper(this);
+    mEdgeTracker.setOnDataChangedListener(this::rearmPrefetch);
   }
 
   @Override
   protected void onFinishInflate() {
     super.onFinishInflate();
-    mTargetView = findViewById(R.id.recycler_view);
-    mTargetView.addOnScrollListener(mOnScrollListener);
-
+    if (getChildCount() != 3) {
+      throw new IllegalStateException("NestedScrollLoadingLayout must have exactly 3 children: "
+          + "top loading view, scrolling target and bottom loading view, but has " + getChildCount());
+    }
     mTopLoadingView = getChildAt(0);
-    mBottomLoadingView = getChildAt(getChildCount() - 1);
+    mTargetView = getChildAt(1);
+    mBottomLoadingView = getChildAt(2);
+    if (mTargetView instanceof RecyclerView) {
+      ((RecyclerView) mTargetView).addOnScrollListener(mOnScrollListener);
+    }
+    mEdgeTracker.setTarget(mTargetView);
+  }
+
+  /**
+   * 一次测量完成：两个 LoadingView 按自身的高度测量，mTargetView 的高度与容器的内容区域一致。
+   */
+  @Override
+  protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    final int heightMode = MeasureSpec.getMode(heightMeasureSpec);
+    final int verticalPadding = getPaddingTop() + getPaddingBottom();
+    final MarginLayoutParams targetLp = (MarginLayoutParams) mTargetView.getLayoutParams();
+    final int targetMargins = targetLp.topMargin + targetLp.bottomMargin;
+
+    final int height;
+    if (heightMode == MeasureSpec.UNSPECIFIED) {
+      // 没有高度限制时（例如放在 ScrollView 中）以 mTargetView 自身的高度为准
+      measureChildWithMargins(mTargetView, widthMeasureSpec, 0, heightMeasureSpec, 0);
+      height = mTargetView.getMeasuredHeight() + targetMargins + verticalPadding;
+    } else {
+      height = MeasureSpec.getSize(heightMeasureSpec);
+    }
+    final int targetHeight = Math.max(height - verticalPadding - targetMargins, 0);
+    mTargetView.measure(getChildMeasureSpec(widthMeasureSpec,
+        getPaddingLeft() + getPaddingRight() + targetLp.leftMargin + targetLp.rightMargin, targetLp.width),
+        MeasureSpec.makeMeasureSpec(targetHeight, MeasureSpec.EXACTLY));
+    measureChildWithMargins(mTopLoadingView, widthMeasureSpec, 0, heightMeasureSpec, 0);
+    measureChildWithMargins(mBottomLoadingView, widthMeasureSpec, 0, heightMeasureSpec, 0);
+
+    int width = 0;
+    for (int i = 0; i < getChildCount(); ++i) {
+      final View child = getChildAt(i);
+      final MarginLayoutParams lp = (MarginLayoutParams) child.getLayoutParams();
+      width = Math.max(width, child.getMeasuredWidth() + lp.leftMargin + lp.rightMargin);
+    }
+    width += getPaddingLeft() + getPaddingRight();
+    setMeasuredDimension(resolveSize(Math.max(width, getSuggestedMinimumWidth()), widthMeasureSpec), height);
+  }
+
+  /**
+   * 自上而下依次排列顶部 LoadingView、mTargetView、底部 LoadingView，起始位置时只有 mTargetView 可见。
+   * LoadingView 高度变化时（旋转、软键盘、分屏等）在这里同步到状态机，保持当前展开的距离不变，不需要再次布局。
+   */
+  @Override
+  protected void onLayout(boolean changed, int l, int t, int r, int b) {
+    final int left = getPaddingLeft();
+    int top = getPaddingTop();
+    for (int i = 0; i < getChildCount(); ++i) {
+      final View child = getChildAt(i);
+      final MarginLayoutParams lp = (MarginLayoutParams) child.getLayoutParams();
+      top += lp.topMargin;
+      child.layout(left + lp.leftMargin, top,
+          left + lp.leftMargin + child.getMeasuredWidth(), top + child.getMeasuredHeight());
+      top += child.getMeasuredHeight() + lp.bottomMargin;
+    }
 
-    getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
-      @Override
-      public void onGlobalLayout() {
-        getViewTreeObserver().removeOnGlobalLayoutListener(this);
-        initParam();
+    final int topViewHeight = getHeightWithMargins(mTopLoadingView);
+    final int bottomViewHeight = getHeightWithMargins(mBottomLoadingView);
+    if (topViewHeight != mState.getTopViewHeight() || bottomViewHeight != mState.getBottomViewHeight()) {
+      mState.setLoadingViewHeights(topViewHeight, bottomViewHeight);
+      if (!mAnimator.isRunning()) {
+        applyPosition();
+      } else if (mState.isLoading()) {
+        // 正在展开的动画转向新的加载位置
+        animateTo(OffsetAnimation.Mode.LINEAR, mState.getLoadPosition(mState.getLoadingEdge()), mAnimateToLoadDuration);
+      } else {
+        animateTo(OffsetAnimation.Mode.SPRING, mState.getStartPosition(), ANIMATE_TO_START_DURATION);
       }
-    });
+    }
+  }
+
+  private static int getHeightWithMargins(@NonNull View child) {
+    final MarginLayoutParams lp = (MarginLayoutParams) child.getLayoutParams();
+    return child.getMeasuredHeight() + lp.topMargin + lp.bottomMargin;
+  }
+
+  @Override
+  protected boolean checkLayoutParams(ViewGroup.LayoutParams p) {
+    return p instanceof MarginLayoutParams;
+  }
+
+  @Override
+  protected ViewGroup.LayoutParams generateDefaultLayoutParams() {
+    return new MarginLayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT);
   }
 
-  private void initParam() {
-    mTopViewHeight = mTopLoadingView.getMeasuredHeight();
-    mBottomViewHeight = mBottomLoadingView.getMeasuredHeight();
-    mTopPosition = 0;
-    mStartPosition = mTopViewHeight;
-    mBottomPosition = mTopViewHeight + mBottomViewHeight;
+  @Override
+  public ViewGroup.LayoutParams generateLayoutParams(AttributeSet attrs) {
+    return new MarginLayoutParams(getContext(), attrs);
+  }
 
-    mTargetView.getLayoutParams().height = getHeight();
-    mTargetView.requestLayout();
-    scrollTo(mStartPosition);
+  @Override
+  protected ViewGroup.LayoutParams generateLayoutParams(ViewGroup.LayoutParams p) {
+    return (p instanceof MarginLayoutParams) ? new MarginLayoutParams((MarginLayoutParams) p) : new MarginLayoutParams(p);
   }
 
   public boolean isLoading() {
-    return mIsLoading;
+    return mState.isLoading();
+  }
+
+  /** 是否正在向 direction 方向加载（LoadingView 已展开） */
+  public boolean isLoading(@NonNull Direction direction) {
+    return mState.isLoading(toEdge(direction));
   }
 
   public void setShowTopLoadingView(boolean showTopLoadView) {
-    mShowTopLoadingView = showTopLoadView;
+    mState.setShowTopLoadingView(showTopLoadView);
   }
 
   public void setShowBottomLoadingView(boolean showBottomLoadView) {
-    mShowBottomLoadingView = showBottomLoadView;
+    mState.setShowBottomLoadingView(showBottomLoadView);
+  }
+
+  /**
+   * 开启预加载：第一个/最后一个可见条目距离列表边界不足 itemCount 个时，
+   * 通过 {@link OnPrefetchListener} 提前通知业务方加载，<= 0 关闭。
+   */
+  public void setPrefetchDistance(int itemCount) {
+    mPrefetchDistance = itemCount;
+  }
+
+  /** 预计一次加载的耗时，按当前滚动速度折算成额外的预加载条目数 */
+  public void setPrefetchLeadTime(long leadTimeMs) {
+    mPrefetchLeadTime = leadTimeMs;
+  }
+
+  /**
+   * 与其他 NestedScrollLoadingLayout 共用同一个回收池，需在设置 LayoutManager 之后调用；
+   * LayoutManager 解绑时会把子 View 回收进池中，供其他列表复用。
+   * 回收池会持有子 View 的 Context，应由同一个页面持有并在页面销毁时清空，见 {@link com.pantsu.scrollwidget.view.data.MyListAdapter#createSharedViewPool()}。
+   */
+  public void setRecycledViewPool(@NonNull RecyclerView.RecycledViewPool pool) {
+    if (!(mTargetView instanceof RecyclerView)) {
+      throw new IllegalStateException("scrolling target is not a RecyclerView: " + mTargetView);
+    }
+    final RecyclerView recyclerView = (RecyclerView) mTargetView;
+    recyclerView.setRecycledViewPool(pool);
+    if (recyclerView.getLayoutManager() instanceof LinearLayoutManager) {
+      ((LinearLayoutManager) recyclerView.getLayoutManager()).setRecycleChildrenOnDetach(true);
+    }
+  }
+
+  /** 调试用：每次读取缓存的边界状态时与 canScrollVertically 的结果比对，不一致时打印日志 */
+  public void setEdgeVerificationEnabled(boolean enabled) {
+    mEdgeTracker.setVerifyEnabled(enabled);
+  }
+
+  int getEdgeMismatchCount() {
+    return mEdgeTracker.getMismatchCount();
+  }
+
+  /** 设置为 null 关闭统计，关闭时热路径上没有任何额外开销 */
+  public void setScrollTracer(ScrollTracer scrollTracer) {
+    mScrollTracer = scrollTracer;
+  }
+
+  /**
+   * 切换位置的应用方式，见 {@link OffsetMode}。切换时保持当前位置不变。
+   */
+  public void setOffsetMode(@NonNull OffsetMode offsetMode) {
+    if (mOffsetMode == offsetMode) {
+      return;
+    }
+    mOffsetMode = offsetMode;
+    if (offsetMode == OffsetMode.TRANSLATION) {
+      setScrollY(0);
+    } else {
+      for (int i = 0; i < getChildCount(); ++i) {
+        getChildAt(i).setTranslationY(0f);
+      }
+    }
+    applyPosition();
+  }
+
+  @NonNull
+  public OffsetMode getOffsetMode() {
+    return mOffsetMode;
   }
 
   public int getTargetViewOffset() {
-    return Math.abs(getPosition() - mStartPosition);
+    return mState.getTargetViewOffset();
   }
 
   public void startLoading(@NonNull Direction direction) {
-    if (mIsLoading && mLoadingDirection == direction) {
+    if (mState.isLoading(toEdge(direction))) {
       return;
     }
-    if (mAnimator != null && mAnimator.isStarted()) {
-      mAnimator.cancel();
-    }
+    // 正在进行的回弹动画直接转向加载位置，不需要先取消
     startLoading(direction, true);
   }
 
   private void startLoading(@NonNull Direction direction, boolean animation) {
-    mIsLoading = true;
-    mLoadingDirection = direction;
+    mState.startLoading(toEdge(direction));
 
     setLoadingStatus(direction);
     moveToLoadingPosition(direction, animation);
   }
 
   public void stopLoading(boolean animation) {
-    if (!mIsLoading && mAnimator == null) {
+    // 预加载不会进入加载状态，也要在这里重新允许预加载，加载失败后才能再次触发
+    rearmPrefetch();
+    if (!mState.isLoading() && !mAnimator.isRunning()) {
       return;
     }
-    if (mAnimator != null && mAnimator.isStarted()) {
-      mAnimator.cancel();
-      mAnimator = null;
+    mNotifyLoadOnEnd = false;
+    if (mScrollTracer != null && mState.isLoading() && mLoadStartNanos != 0L) {
+      mScrollTracer.onLoadFinished(toDirection(mState.getLoadingEdge()), System.nanoTime() - mLoadStartNanos);
     }
-    mIsLoading = false;
-    mLoadingDirection = null;
+    mLoadStartNanos = 0L;
+    mState.stopLoading();
     resetLoadStatus();
     resetToStartPosition(animation);
   }
@@ -176,172 +351,203 @@ public class NestedScrollLoadingLayout extends LinearLayout implements NestedScr
   /** 通过target参数判断ChildView以及滚动方向，决定是否进行嵌套滚动 */
   @Override
   public boolean onStartNestedScroll(@NonNull View child, @NonNull View target, int axes, int type) {
-    if (!isEnabled() || !(target instanceof NestedScrollingChild2)) {
-      return false;
-    }
-    /** FIX：滑动速度较大时，FLING状态一直被 NestedScrollParent 假消费，导致直到滑动停止的耗时长达数秒 */
-    if (type == ViewCompat.TYPE_NON_TOUCH) {
+    if (!isEnabled() || !(target instanceof NestedScrollingChild3)
+        || (axes & ViewCompat.SCROLL_AXIS_VERTICAL) == 0) {
       return false;
     }
+    /*
+     * FIX：滑动速度较大时，FLING状态一直被 NestedScrollParent 假消费，导致直到滑动停止的耗时长达数秒。
+     * 现在接受 TYPE_NON_TOUCH，但 FLING 阶段的 onNestedPreScroll 不消费任何距离，
+     * 只在 onNestedScroll 中接收列表到达边界后剩余的滚动距离。
+     */
     return true;
   }
 
   @Override
   public void onNestedScrollAccepted(@NonNull View child, @NonNull View target, int axes, int type) {
-    mNestedScrollHelper.onNestedScrollAccepted(child, target, axes);
+    mNestedScrollHelper.onNestedScrollAccepted(child, target, axes, type);
+    mEdgeTracker.setTarget(target);
+    if (mScrollTracer != null && type == ViewCompat.TYPE_TOUCH) {
+      mGestureMetrics.reset();
+    }
   }
 
   @Override
   public void onNestedScroll(@NonNull View target, int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed, int type) {
-    onNestedScroll(target, dxConsumed, dyConsumed, dxUnconsumed, dyUnconsumed);
-  }
-
-  @Override
-  public void onStopNestedScroll(@NonNull View target, int type) {
-    mNestedScrollHelper.onStopNestedScroll(target);
-  }
-
-  @Override
-  public int getNestedScrollAxes() {
-    return mNestedScrollHelper.getNestedScrollAxes();
-  }
-
-  private enum ScrollState {
-    NONE,
-    LOADING_TOP,
-    LOADING_BOTTOM
+    mScrollConsumed[0] = 0;
+    mScrollConsumed[1] = 0;
+    onNestedScroll(target, dxConsumed, dyConsumed, dxUnconsumed, dyUnconsumed, type, mScrollConsumed);
   }
 
   /**
-   * 监听触摸事件并设置滚动状态 {@link #mScrollState }
-   * <p>
-   * 配合 {@link #onNestedPreScroll(View, int, int, int[], int)} 方法，
-   * 实现『 滚动出现LoadingView后，在抬起触摸手指之前，只触发当前LoadingView滑动，不触发列表滑动 』的交互效果。
+   * 列表滚动到边界后剩余的距离：拖动时用来展开 LoadingView，FLING 时用剩余速度弹出 LoadingView，
+   * 消费的距离累加到 consumed 中，列表据此处理真正剩余的部分（例如边缘效果）。
    */
   @Override
-  public boolean dispatchTouchEvent(MotionEvent event) {
-    if (mIsLoading) {
-      return true;
+  public void onNestedScroll(@NonNull View target, int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed,
+      int type, @NonNull int[] consumed) {
+    if (dyConsumed != 0 && !mEdgeTracker.isTrackingScroll()) {
+      mEdgeTracker.onScrolled(dyConsumed);
     }
-    switch (event.getActionMasked()) {
-      case MotionEvent.ACTION_DOWN:
-        mLastTouchY = event.getY();
-        break;
-      case MotionEvent.ACTION_MOVE:
-        final float dy = event.getY() - mLastTouchY;
-        if (mScrollState == ScrollState.NONE) {
-          if (dy > 0 && !mTargetView.canScrollVertically(-1)) {
-            mScrollState = ScrollState.LOADING_TOP;
-          } else if (dy < 0 && !mTargetView.canScrollVertically(1)) {
-            mScrollState = ScrollState.LOADING_BOTTOM;
-          }
-        }
-        mLastTouchY = event.getY();
-        break;
-      case MotionEvent.ACTION_UP:
-      case MotionEvent.ACTION_CANCEL: {
-        mScrollState = ScrollState.NONE;
-        break;
+    if (type == ViewCompat.TYPE_NON_TOUCH) {
+      if (dyUnconsumed != 0 && onFlingOverscroll(target, dyUnconsumed)) {
+        consumed[1] += dyUnconsumed;
       }
+      return;
+    }
+    if (dyUnconsumed != 0) {
+      final int dyScrolled = mState.onNestedScroll(dyUnconsumed);
+      if (dyScrolled != 0) {
+        applyPosition();
+        consumed[1] += dyScrolled;
+      }
+      if (mScrollTracer != null) {
+        mGestureMetrics.loadingViewConsumedPx += Math.abs(dyScrolled);
+      }
+    }
+    if (mScrollTracer != null) {
+      mGestureMetrics.listConsumedPx += Math.abs(dyConsumed);
     }
-    return super.dispatchTouchEvent(event);
   }
 
+  /** 手指抬起时根据本次手势展开 LoadingView 的距离决定复位还是加载，FLING 到达边界已在 onNestedScroll 中处理 */
   @Override
-  public void onNestedPreScroll(@NonNull View target, int dx, int dy, @NonNull int[] consumed, int type) {
-    if (dy == 0) {
+  public void onStopNestedScroll(@NonNull View target, int type) {
+    mNestedScrollHelper.onStopNestedScroll(target, type);
+    if (type != ViewCompat.TYPE_TOUCH) {
       return;
     }
-    Log.i("touch-me", "onNestedPreScroll");
-    switch (mScrollState) {
-      case NONE:
+    switch (mState.onTouchScrollFinished(mTouchSlop)) {
+      case RESET:
+        resetToStartPosition(false);
+        break;
+      case LOAD_TOP:
+        startLoading(Direction.TOP, true);
         break;
-      case LOADING_TOP:
-        handleNestedScrollTop(dy, consumed);
+      case LOAD_BOTTOM:
+        startLoading(Direction.BOTTOM, true);
         break;
-      case LOADING_BOTTOM:
-        handleNestedScrollBottom(dy, consumed);
+      case NONE:
+      default:
         break;
     }
+    if (mScrollTracer != null) {
+      mScrollTracer.onGestureFinished(mGestureMetrics);
+    }
   }
 
-  private void handleNestedScrollTop(int dy, int[] consumed) {
-    if (!mShowTopLoadingView) {
-      return;
+  /**
+   * 列表开始 FLING 前的初速度（向上滚动内容为正），与列表一样限制最大速度后用 mTargetFling 同步模拟，
+   * 不消费 FLING。
+   */
+  @Override
+  public boolean onNestedPreFling(@NonNull View target, float velocityX, float velocityY) {
+    final int velocity = (int) Math.max(-mMaxFlingVelocity, Math.min(velocityY, mMaxFlingVelocity));
+    mTargetFling.fling(0, 0, 0, velocity, 0, 0, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    return super.onNestedPreFling(target, velocityX, velocityY);
+  }
+
+  /**
+   * FLING 到达列表边界：从 mTargetFling 读取列表此刻剩余的速度，直接以该速度弹出 LoadingView 并开始加载，
+   * 不再等待列表停止滚动。读取不到时（没有经过 onNestedPreFling）按普通动画的时长弹出。
+   *
+   * @return 是否接管了剩余的滚动距离
+   */
+  private boolean onFlingOverscroll(@NonNull View target, int dyUnconsumed) {
+    final Edge edge = mState.onFlingOverscroll(dyUnconsumed);
+    if (edge == null) {
+      return false;
     }
-    if (getPosition() <= mStartPosition && !mTargetView.canScrollVertically(-1)) {//展开Top
-      int targetPosition = getPosition() + dy;
-      if (targetPosition < mTopPosition) {
-        targetPosition = mTopPosition;
-      }
-      if (targetPosition > mStartPosition) {
-        targetPosition = mStartPosition;
-      }
-      scrollTo(targetPosition);
-      consumed[1] = dy;
+    final float velocity = mTargetFling.computeScrollOffset() ? mTargetFling.getCurrVelocity() : 0f;
+    mTargetFling.abortAnimation();
+    final Direction direction = toDirection(edge);
+    mState.startLoading(edge);
+    setLoadingStatus(direction);
+    mNotifyLoadOnEnd = true;
+    animateTo(OffsetAnimation.Mode.LINEAR, getLoadPosition(direction),
+        mState.getFlingAnimationDuration(mAnimateToLoadDuration, edge, velocity));
+    // 剩余速度已经交给 LoadingView，停止列表的 FLING
+    if (target instanceof RecyclerView) {
+      ((RecyclerView) target).stopScroll();
+    } else if (target instanceof NestedScrollView) {
+      // 以 0 速度重新 FLING 会替换掉当前的 FLING，下一帧即结束
+      ((NestedScrollView) target).fling(0);
+    } else {
+      ((NestedScrollingChild2) target).stopNestedScroll(ViewCompat.TYPE_NON_TOUCH);
+    }
+    return true;
+  }
+
+  @Override
+  public int getNestedScrollAxes() {
+    return mNestedScrollHelper.getNestedScrollAxes();
+  }
+
+  /** 加载过程中不响应触摸事件 */
+  @Override
+  public boolean dispatchTouchEvent(MotionEvent event) {
+    if (mState.isLoading()) {
+      return true;
     }
+    return super.dispatchTouchEvent(event);
   }
 
-  private void handleNestedScrollBottom(int dy, int[] consumed) {
-    if (!mShowBottomLoadingView) {
+  /**
+   * 本次手势已经展开 LoadingView 时（见 {@link #onNestedScroll(View, int, int, int, int, int, int[])}），
+   * 实现『 滚动出现LoadingView后，在抬起触摸手指之前，只触发当前LoadingView滑动，不触发列表滑动 』的交互效果。
+   */
+  @Override
+  public void onNestedPreScroll(@NonNull View target, int dx, int dy, @NonNull int[] consumed, int type) {
+    // FLING 阶段不做任何消费，避免假消费拖长 FLING
+    if (dy == 0 || type == ViewCompat.TYPE_NON_TOUCH) {
       return;
     }
-    if (getPosition() >= mStartPosition && !mTargetView.canScrollVertically(1)) {
-      int targetPosition = getPosition() + dy;
-      if (targetPosition > mBottomPosition) {
-        targetPosition = mBottomPosition;
-      }
-      if (targetPosition < mStartPosition) {
-        targetPosition = mStartPosition;
-      }
-      scrollTo(targetPosition);
+    final boolean tracing = mScrollTracer != null;
+    final long startNanos = tracing ? System.nanoTime() : 0L;
+    if (mState.onNestedPreScroll(dy)) {
+      applyPosition();
       consumed[1] = dy;
     }
+    if (tracing) {
+      mGestureMetrics.eventCount++;
+      mGestureMetrics.loadingViewConsumedPx += Math.abs(consumed[1]);
+      if (mState.getScrollState() != LoadingStateMachine.ScrollState.NONE) {
+        mGestureMetrics.handleScrollNanos += System.nanoTime() - startNanos;
+      }
+    }
   }
 
   private void moveToLoadingPosition(@NonNull Direction direction, boolean animation) {
     if (!animation) {
-      setPosition(mStartPosition);
+      mAnimator.cancel();
+      setPosition(mState.getStartPosition());
     } else {
-      if (mAnimator != null) {
-        mAnimator.cancel();
-      }
-      ValueAnimator animator = ValueAnimator.ofInt(getPosition(), getLoadPosition(direction));
-      animator.setDuration(getAnimationDuration(direction, getLoadPosition(direction)));
-      animator.addUpdateListener(anim -> setPosition((int) anim.getAnimatedValue()));
-      animator.addListener(new AnimatorListenerAdapter() {
-        @Override
-        public void onAnimationEnd(Animator animation) {
-          mAnimator = null;
-          notifyLoadEvent();
-        }
-      });
-      mAnimator = animator;
-      mAnimator.start();
+      final int loadPosition = getLoadPosition(direction);
+      mNotifyLoadOnEnd = true;
+      animateTo(OffsetAnimation.Mode.LINEAR, loadPosition, getAnimationDuration(direction, loadPosition));
     }
   }
 
+  /** 回弹使用弹簧模型，从手指松开时的位置平滑回到起始位置 */
   private void resetToStartPosition(boolean animation) {
     if (!animation) {
-      setPosition(mStartPosition);
+      mAnimator.cancel();
+      setPosition(mState.getStartPosition());
     } else {
-      ValueAnimator animator = ValueAnimator.ofInt(getPosition(), mStartPosition);
-      animator.setDuration(getAnimationDuration(getTargetLoadDirection(), mStartPosition));
-      animator.addUpdateListener(anim -> setPosition((int) anim.getAnimatedValue()));
-      animator.addListener(new AnimatorListenerAdapter() {
-        @Override
-        public void onAnimationEnd(Animator animation) {
-          mAnimator = null;
-        }
-      });
-      mAnimator = animator;
-      mAnimator.start();
+      final int startPosition = mState.getStartPosition();
+      animateTo(OffsetAnimation.Mode.SPRING, startPosition, getAnimationDuration(getTargetLoadDirection(), startPosition));
+    }
+  }
+
+  private void animateTo(@NonNull OffsetAnimation.Mode mode, int targetPosition, long durationMs) {
+    if (mScrollTracer != null && !mAnimator.isRunning()) {
+      mAnimationStartNanos = System.nanoTime();
     }
+    mAnimator.animateTo(mode, getPosition(), targetPosition, durationMs);
   }
 
   private long getAnimationDuration(@NonNull Direction direction, int targetPosition) {
-    final long viewHeight = (direction == Direction.TOP) ? mTopViewHeight : mBottomViewHeight;
-    return mAnimateToLoadDuration * Math.abs(getPosition() - targetPosition) / viewHeight;
+    return mState.getAnimationDuration(mAnimateToLoadDuration, toEdge(direction), targetPosition);
   }
 
   public interface LoadStatus {
@@ -372,6 +578,14 @@ public class NestedScrollLoadingLayout extends LinearLayout implements NestedScr
 
   public enum Direction {TOP, BOTTOM}
 
+  /** 位置（LoadingView 展开的距离）应用到 View 上的方式 */
+  public enum OffsetMode {
+    /** 滚动整个容器，每一帧都会重绘容器及列表 */
+    SCROLL,
+    /** 只平移子 View，每一帧只更新 RenderNode 的属性，不重新录制列表的绘制内容 */
+    TRANSLATION
+  }
+
   private List<OnLoadListener> mOnLoadListeners = new ArrayList<>();
 
   public void addOnLoadListener(@NonNull OnLoadListener onLoadListener) {
@@ -384,39 +598,123 @@ public class NestedScrollLoadingLayout extends LinearLayout implements NestedScr
 
   /** LoadView完全弹出时，通知业务方加载数据 */
   private void notifyLoadEvent() {
+    if (mScrollTracer != null) {
+      mLoadStartNanos = System.nanoTime();
+    }
     for (OnLoadListener onLoadListener : mOnLoadListeners) {
-      onLoadListener.onLoad(mLoadingDirection);
+      onLoadListener.onLoad(toDirection(mState.getLoadingEdge()));
+    }
+  }
+
+  public interface OnPrefetchListener {
+    void onPrefetch(@NonNull Direction direction);
+  }
+
+  private List<OnPrefetchListener> mOnPrefetchListeners = new ArrayList<>();
+
+  public void addOnPrefetchListener(@NonNull OnPrefetchListener onPrefetchListener) {
+    mOnPrefetchListeners.add(onPrefetchListener);
+  }
+
+  public void removeOnPrefetchListener(@NonNull OnPrefetchListener onPrefetchListener) {
+    mOnPrefetchListeners.remove(onPrefetchListener);
+  }
+
+  /**
+   * 重新允许两端预加载。{@link #stopLoading(boolean)} 和列表数据变化时会自动调用；
+   * 预加载的请求被业务方忽略（例如该方向已有请求在进行）时，业务方应在那次请求结束后调用。
+   */
+  public void rearmPrefetch() {
+    mPrefetchTopArmed = true;
+    mPrefetchBottomArmed = true;
+  }
+
+  private void checkPrefetch(@NonNull RecyclerView recyclerView, int dy) {
+    if (!(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) {
+      return;
+    }
+    final LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+    final int itemCount = layoutManager.getItemCount();
+    final int distance = mPrefetchDistance + getPrefetchLookahead(layoutManager, dy);
+    if (dy < 0) {
+      if (mState.isShowTopLoadingView() && mPrefetchTopArmed
+          && layoutManager.findFirstVisibleItemPosition() <= distance) {
+        mPrefetchTopArmed = false;
+        notifyPrefetchEvent(Direction.TOP);
+      }
+    } else {
+      if (mState.isShowBottomLoadingView() && mPrefetchBottomArmed
+          && layoutManager.findLastVisibleItemPosition() >= itemCount - 1 - distance) {
+        mPrefetchBottomArmed = false;
+        notifyPrefetchEvent(Direction.BOTTOM);
+      }
+    }
+  }
+
+  /** dy 约为一帧的滚动距离，估算加载耗时内还会滑过多少个条目 */
+  private int getPrefetchLookahead(@NonNull LinearLayoutManager layoutManager, int dy) {
+    final View child = layoutManager.getChildAt(0);
+    if (child == null || child.getHeight() == 0) {
+      return 0;
+    }
+    return (int) (Math.abs(dy) * mPrefetchLeadTime / FRAME_INTERVAL_MS / child.getHeight());
+  }
+
+  private void notifyPrefetchEvent(@NonNull Direction direction) {
+    for (OnPrefetchListener onPrefetchListener : mOnPrefetchListeners) {
+      onPrefetchListener.onPrefetch(direction);
     }
   }
 
   private int getLoadPosition(@NonNull Direction direction) {
-    return (direction == Direction.TOP) ? mTopPosition : mBottomPosition;
+    return mState.getLoadPosition(toEdge(direction));
   }
 
   @NonNull
   private Direction getTargetLoadDirection() {
-    return (getPosition() <= mStartPosition) ? Direction.TOP : Direction.BOTTOM;
+    return toDirection(mState.getTargetLoadEdge());
   }
 
-  private void scrollTo(int position) {
-    scrollTo(getScrollX(), position);
+  @NonNull
+  private static Edge toEdge(@NonNull Direction direction) {
+    return (direction == Direction.TOP) ? Edge.TOP : Edge.BOTTOM;
   }
 
-  private void scrollBy(int position) {
-    scrollBy(getScrollX(), position);
+  @NonNull
+  private static Direction toDirection(@NonNull Edge edge) {
+    return (edge == Edge.TOP) ? Direction.TOP : Direction.BOTTOM;
   }
 
   private int getPosition() {
-    return getScrollY();
+    return mState.getPosition();
   }
 
   private void setPosition(int position) {
-    setScrollY(position);
+    mState.setPosition(position);
+    applyPosition();
+  }
+
+  /** 把状态机中的位置应用到 View 上 */
+  private void applyPosition() {
+    if (mOffsetMode == OffsetMode.SCROLL) {
+      setScrollY(mState.getPosition());
+      return;
+    }
+    final float translationY = -mState.getPosition();
+    for (int i = 0; i < getChildCount(); ++i) {
+      getChildAt(i).setTranslationY(translationY);
+    }
   }
 
   /** 重写此方法，用于正确计算 {@link #canScrollVertically(int)} */
   @Override
   protected int computeVerticalScrollRange() {
-    return getHeight() + mTopViewHeight + mBottomViewHeight;
+    return getHeight() + mState.getExtraScrollRange();
+  }
+
+  /** TRANSLATION 模式下 scrollY 始终为 0，以状态机中的位置作为滚动偏移 */
+  @Override
+  protected int computeVerticalScrollOffset() {
+    return mState.getPosition();
   }
 }
@@ -0,0 +1,79 @@
+package com.pantsu.scrollwidget.view.view;
+
+import android.view.Choreographer;
+import androidx.annotation.NonNull;
+
+import com.pantsu.scrollwidget.core.OffsetAnimation;
+
+/**
+ * 在 Choreographer 帧回调中推进 {@link OffsetAnimation}，整个 View 生命周期内复用同一个实例，
+ * 每帧直接回调 int 偏移量，没有装箱和临时对象。
+ */
+final class OffsetAnimator implements Choreographer.FrameCallback {
+
+  interface Callback {
+    void onOffsetUpdate(int offset);
+
+    void onAnimationEnd(boolean canceled);
+  }
+
+  private final OffsetAnimation mAnimation = new OffsetAnimation();
+  private final Callback mCallback;
+
+  private boolean mFrameScheduled;
+  /** 上一帧的时间，-1 表示还没有收到第一帧 */
+  private long mLastFrameNanos = -1L;
+
+  OffsetAnimator(@NonNull Callback callback) {
+    mCallback = callback;
+  }
+
+  /** 动画进行中时忽略 from，从当前位置和速度转向新的目标 */
+  void animateTo(@NonNull OffsetAnimation.Mode mode, int from, int to, long durationMs) {
+    mAnimation.animateTo(mode, from, to, durationMs);
+    if (!mFrameScheduled) {
+      mFrameScheduled = true;
+      mLastFrameNanos = -1L;
+      Choreographer.getInstance().postFrameCallback(this);
+    }
+  }
+
+  void cancel() {
+    if (!mAnimation.isRunning()) {
+      return;
+    }
+    if (mFrameScheduled) {
+      mFrameScheduled = false;
+      Choreographer.getInstance().removeFrameCallback(this);
+    }
+    mAnimation.cancel();
+    mCallback.onAnimationEnd(true);
+  }
+
+  boolean isRunning() {
+    return mAnimation.isRunning();
+  }
+
+  long getDurationMs() {
+    return mAnimation.getDurationMs();
+  }
+
+  @Override
+  public void doFrame(long frameTimeNanos) {
+    mFrameScheduled = false;
+    if (!mAnimation.isRunning()) {
+      return;
+    }
+    // 与 ValueAnimator 一样，以第一帧的时间作为起点
+    final long deltaNanos = (mLastFrameNanos < 0L) ? 0L : frameTimeNanos - mLastFrameNanos;
+    mLastFrameNanos = frameTimeNanos;
+    final boolean running = mAnimation.step(deltaNanos);
+    mCallback.onOffsetUpdate(mAnimation.getValue());
+    if (running) {
+      mFrameScheduled = true;
+      Choreographer.getInstance().postFrameCallback(this);
+    } else {
+      mCallback.onAnimationEnd(false);
+    }
+  }
+}
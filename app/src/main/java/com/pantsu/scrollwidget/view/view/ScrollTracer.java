@@ -0,0 +1,39 @@
+package com.pantsu.scrollwidget.view.view;
+
+import androidx.annotation.NonNull;
+
+/**
+ * {@link NestedScrollLoadingLayout} 热路径的统计回调，业务方可接入自己的指标上报。
+ * <p>
+ * 未设置时布局不会计时也不会累计任何数据；所有回调都在主线程执行，回调中不要做耗时操作。
+ */
+public interface ScrollTracer {
+
+  /** 一次触摸手势结束。metrics 会被下一次手势复用，需要保存时自行拷贝字段 */
+  void onGestureFinished(@NonNull GestureMetrics metrics);
+
+  /** LoadingView 展开或收起的动画结束，canceled 表示动画被中途取消 */
+  void onAnimationFinished(long plannedDurationMs, long elapsedNanos, boolean canceled);
+
+  /** 从通知业务方加载到 stopLoading 的耗时 */
+  void onLoadFinished(@NonNull NestedScrollLoadingLayout.Direction direction, long latencyNanos);
+
+  /** 单次手势的计数器 */
+  final class GestureMetrics {
+    /** 处理的 onNestedPreScroll 事件数 */
+    public int eventCount;
+    /** LoadingView 消费的像素 */
+    public int loadingViewConsumedPx;
+    /** 列表自身消费的像素 */
+    public int listConsumedPx;
+    /** LoadingView 展开期间 LoadingStateMachine.onNestedPreScroll 的累计耗时 */
+    public long handleScrollNanos;
+
+    void reset() {
+      eventCount = 0;
+      loadingViewConsumedPx = 0;
+      listConsumedPx = 0;
+      handleScrollNanos = 0L;
+    }
+  }
+}
@@ -1,14 +1,23 @@
 package com.qianmo.mynestedscrolling;
 
 import android.content.Intent;
+import android.graphics.Color;
 import android.os.Bundle;
+import android.util.TypedValue;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.pantsu.scrollwidget.R;
 import com.pantsu.scrollwidget.view.MainActivityCopy;
+import com.qianmo.mynestedscrolling.view.MyNestedScrollChild;
 
 public class MainActivity extends AppCompatActivity {
 
+  private static final int ITEM_COUNT = 1000;
+
   @Override
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
@@ -18,5 +27,30 @@ public class MainActivity extends AppCompatActivity {
       Intent intent = new Intent(MainActivity.this, MainActivityCopy.class);
       startActivity(intent);
     });
+
+    MyNestedScrollChild scrollChild = findViewById(R.id.nested_scroll_child);
+    scrollChild.setLayoutMargin(getResources().getDisplayMetrics().heightPixels / 4);
+    scrollChild.setAdapter(new MyNestedScrollChild.Adapter() {
+      @Override
+      public int getItemCount() {
+        return ITEM_COUNT;
+      }
+
+      @NonNull
+      @Override
+      public View onCreateView(@NonNull ViewGroup parent) {
+        TextView textView = new TextView(parent.getContext());
+        textView.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+            ViewGroup.LayoutParams.WRAP_CONTENT));
+        textView.setTextColor(Color.MAGENTA);
+        textView.setTextSize(TypedValue.COMPLEX_UNIT_SP, 20);
+        return textView;
+      }
+
+      @Override
+      public void onBindView(@NonNull View view, int position) {
+        ((TextView) view).setText(String.valueOf(position));
+      }
+    });
   }
 }
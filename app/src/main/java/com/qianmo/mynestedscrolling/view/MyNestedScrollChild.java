@@ -1,9 +1,18 @@
 package com.qianmo.mynestedscrolling.view;
 
+import java.util.ArrayList;
+
 import android.content.Context;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
 import android.widget.LinearLayout;
+import android.widget.OverScroller;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.view.NestedScrollingChild;
 import androidx.core.view.NestedScrollingChildHelper;
 import androidx.core.view.ViewCompat;
@@ -21,17 +30,99 @@ public class MyNestedScrollChild extends LinearLayout implements NestedScrolling
   private int lastY;
   private int showHeight;
 
+  //虚拟化模式：设置 Adapter 后只创建、测量、布局与可见区域（去掉上下 padding，再上下各多出 mLayoutMargin）相交的子 View，
+  //滑出该区域的子 View 放入 mScrapViews 复用。此模式下不使用 scrollY，直接移动子 View
+  private Adapter mAdapter;
+  private final ArrayList<View> mScrapViews = new ArrayList<>();
+  //第一个子 View 对应的位置
+  private int mFirstPosition;
+  //重新布局时第一个子 View 的 top
+  private int mFirstTop;
+  private int mLayoutMargin;
+
+  //惯性滑动，速度与 dy 的方向一致：手指向下为正
+  private VelocityTracker mVelocityTracker;
+  private OverScroller mScroller;
+  private int mMinFlingVelocity;
+  private int mMaxFlingVelocity;
+  private int mLastFlingY;
+
 
   public MyNestedScrollChild(Context context) {
     super(context);
+    init(context);
   }
 
   public MyNestedScrollChild(Context context, AttributeSet attrs) {
     super(context, attrs);
+    init(context);
+  }
+
+  private void init(Context context) {
+    mScroller = new OverScroller(context);
+    final ViewConfiguration configuration = ViewConfiguration.get(context);
+    mMinFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+    mMaxFlingVelocity = configuration.getScaledMaximumFlingVelocity();
+  }
+
+  /** 虚拟化模式的数据源，所有条目使用同一种 View */
+  public interface Adapter {
+    int getItemCount();
+
+    @NonNull
+    View onCreateView(@NonNull ViewGroup parent);
+
+    void onBindView(@NonNull View view, int position);
+  }
+
+  /**
+   * 设置后进入虚拟化模式，原有的子 View 会被移除；设置为 null 时回到完整布局所有子 View 的模式（子 View 需要重新添加）。
+   */
+  public void setAdapter(@Nullable Adapter adapter) {
+    mAdapter = adapter;
+    removeAllViews();
+    mScrapViews.clear();
+    mFirstPosition = 0;
+    mFirstTop = getPaddingTop();
+    super.scrollTo(0, 0);
+    requestLayout();
+  }
+
+  @Nullable
+  public Adapter getAdapter() {
+    return mAdapter;
+  }
+
+  /** 数据变化后重新绑定可见的子 View，尽量保持当前的滚动位置 */
+  public void notifyDataSetChanged() {
+    if (mAdapter != null) {
+      requestLayout();
+    }
+  }
+
+  /** 可见区域上下额外布局的距离，滚动时可以少创建一些子 View */
+  public void setLayoutMargin(int layoutMargin) {
+    mLayoutMargin = layoutMargin;
+    requestLayout();
+  }
+
+  //内容是否已经滚动到顶部
+  public boolean isScrolledToTop() {
+    if (mAdapter == null) {
+      return getScrollY() == 0;
+    }
+    return mFirstPosition == 0 && (getChildCount() == 0 || getChildAt(0).getTop() >= getPaddingTop());
   }
 
   @Override
   protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    if (mAdapter != null) {
+      //虚拟化模式下高度就是可见区域的高度（由父控件决定，见 MyNestedScrollParent#onMeasure），子 View 在布局时按需测量
+      setMeasuredDimension(getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec),
+          getDefaultSize(getSuggestedMinimumHeight(), heightMeasureSpec));
+      showHeight = getMeasuredHeight();
+      return;
+    }
     //第一次测量，因为布局文件中高度是wrap_content，因此测量模式为atmost，即高度不超过父控件的剩余空间
     super.onMeasure(widthMeasureSpec, heightMeasureSpec);
     showHeight = getMeasuredHeight();
@@ -43,34 +134,255 @@ public class MyNestedScrollChild extends LinearLayout implements NestedScrolling
 
   @Override
   public boolean onTouchEvent(MotionEvent event) {
-    switch (event.getAction()) {
-      //按下
+    if (mVelocityTracker == null) {
+      mVelocityTracker = VelocityTracker.obtain();
+    }
+    //自身和父控件都会滚动，速度按屏幕坐标计算
+    final MotionEvent vtev = MotionEvent.obtain(event);
+    vtev.setLocation(event.getRawX(), event.getRawY());
+
+    switch (event.getActionMasked()) {
+      //按下，每次手势只开始一次嵌套滑动
       case MotionEvent.ACTION_DOWN:
         lastY = (int) event.getRawY();
+        if (!mScroller.isFinished()) {
+          mScroller.abortAnimation();
+        }
+        mVelocityTracker.clear();
+        startNestedScroll(ViewCompat.SCROLL_AXIS_VERTICAL);
         break;
       //移动
       case MotionEvent.ACTION_MOVE:
         int y = (int) (event.getRawY());
         int dy = y - lastY;
         lastY = y;
-        if (startNestedScroll(ViewCompat.SCROLL_AXIS_HORIZONTAL)
-            && dispatchNestedPreScroll(0, dy, consumed, offset)) //如果找到了支持嵌套滑动的父类,父类进行了一系列的滑动
-        {
-          //获取滑动距离
-          int remain = dy - consumed[1];
-          if (remain != 0) {
-            scrollBy(0, -remain);
-          }
-
-        } else {
-          scrollBy(0, -dy);
+        scrollWithParent(dy);
+        break;
+      //抬起，速度足够时开始惯性滑动，嵌套滑动在惯性滑动结束后停止
+      case MotionEvent.ACTION_UP:
+        mVelocityTracker.addMovement(vtev);
+        mVelocityTracker.computeCurrentVelocity(1000, mMaxFlingVelocity);
+        final float velocityY = mVelocityTracker.getYVelocity();
+        if (Math.abs(velocityY) < mMinFlingVelocity || !fling(velocityY)) {
+          stopNestedScroll();
         }
+        releaseVelocityTracker();
+        break;
+      case MotionEvent.ACTION_CANCEL:
+        stopNestedScroll();
+        releaseVelocityTracker();
         break;
     }
 
+    if (mVelocityTracker != null) {
+      mVelocityTracker.addMovement(vtev);
+    }
+    vtev.recycle();
+    return true;
+  }
+
+  private void releaseVelocityTracker() {
+    if (mVelocityTracker != null) {
+      mVelocityTracker.recycle();
+      mVelocityTracker = null;
+    }
+  }
+
+  //先交给父控件处理，剩余的距离滚动自身内容，返回父控件和自身一共处理的距离（与 dy 方向一致）
+  private int scrollWithParent(int dy) {
+    int remain = dy;
+    if (dispatchNestedPreScroll(0, dy, consumed, offset)) { //如果找到了支持嵌套滑动的父类,父类进行了一系列的滑动
+      //获取滑动距离
+      remain = dy - consumed[1];
+    }
+    if (remain == 0) {
+      return dy;
+    }
+    return dy - remain - scrollContentBy(-remain);
+  }
+
+  /**
+   * 先询问父控件是否要处理整个惯性滑动，不处理时由自身驱动 OverScroller，
+   * 每一帧的距离同样先经过 dispatchNestedPreScroll，父控件可以先消费其中的一部分（例如显示或隐藏图片）。
+   *
+   * @return 是否开始了惯性滑动
+   */
+  private boolean fling(float velocityY) {
+    if (dispatchNestedPreFling(0, velocityY)) {
+      return false;
+    }
+    final boolean canScroll = velocityY > 0 ? !isScrolledToTop() : canScrollContentDown();
+    dispatchNestedFling(0, velocityY, canScroll);
+    mLastFlingY = 0;
+    mScroller.fling(0, 0, 0, (int) velocityY, 0, 0, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    ViewCompat.postInvalidateOnAnimation(this);
     return true;
   }
 
+  //内容是否还能向上滚动（显示下方的内容）
+  private boolean canScrollContentDown() {
+    if (mAdapter == null) {
+      return getScrollY() < getMeasuredHeight() - showHeight;
+    }
+    final int childCount = getChildCount();
+    return childCount > 0 && (mFirstPosition + childCount < mAdapter.getItemCount()
+        || getChildAt(childCount - 1).getBottom() > getContentBottom());
+  }
+
+  @Override
+  public void computeScroll() {
+    if (!mScroller.computeScrollOffset()) {
+      return;
+    }
+    final int y = mScroller.getCurrY();
+    final int dy = y - mLastFlingY;
+    mLastFlingY = y;
+    //父控件和自身都无法继续滚动时提前结束
+    if (dy != 0 && scrollWithParent(dy) == 0) {
+      mScroller.abortAnimation();
+    }
+    if (mScroller.isFinished()) {
+      stopNestedScroll();
+    } else {
+      ViewCompat.postInvalidateOnAnimation(this);
+    }
+  }
+
+  //滚动内容，dy > 0 时显示下方的内容，返回实际滚动的距离
+  private int scrollContentBy(int dy) {
+    if (mAdapter == null) {
+      final int scrollY = getScrollY();
+      scrollBy(0, dy);
+      return getScrollY() - scrollY;
+    }
+    if (dy == 0 || getChildCount() == 0) {
+      return 0;
+    }
+    final int itemCount = mAdapter.getItemCount();
+    if (dy > 0) {
+      //先把下方需要滑入的子 View 布局出来，再根据最后一个条目的位置限制滚动距离
+      View last = getChildAt(getChildCount() - 1);
+      fillDown(mFirstPosition + getChildCount(), last.getBottom(), getContentBottom() + mLayoutMargin + dy);
+      last = getChildAt(getChildCount() - 1);
+      if (mFirstPosition + getChildCount() == itemCount) {
+        dy = Math.min(dy, Math.max(last.getBottom() - getContentBottom(), 0));
+      }
+    } else {
+      View first = getChildAt(0);
+      fillUp(mFirstPosition - 1, first.getTop(), getPaddingTop() - mLayoutMargin + dy);
+      first = getChildAt(0);
+      if (mFirstPosition == 0) {
+        dy = Math.max(dy, Math.min(first.getTop() - getPaddingTop(), 0));
+      }
+    }
+    if (dy == 0) {
+      return 0;
+    }
+    for (int i = 0; i < getChildCount(); ++i) {
+      getChildAt(i).offsetTopAndBottom(-dy);
+    }
+    recycleOutside();
+    invalidate();
+    return dy;
+  }
+
+  @Override
+  protected void onLayout(boolean changed, int l, int t, int r, int b) {
+    if (mAdapter == null) {
+      super.onLayout(changed, l, t, r, b);
+      return;
+    }
+    //重新绑定所有子 View，保持第一个子 View 的位置不变
+    if (getChildCount() > 0) {
+      mFirstTop = getChildAt(0).getTop();
+    }
+    for (int i = getChildCount() - 1; i >= 0; --i) {
+      mScrapViews.add(getChildAt(i));
+    }
+    removeAllViewsInLayout();
+
+    final int itemCount = mAdapter.getItemCount();
+    if (itemCount == 0) {
+      mFirstPosition = 0;
+      mFirstTop = getPaddingTop();
+      return;
+    }
+    mFirstPosition = Math.min(mFirstPosition, itemCount - 1);
+    fillDown(mFirstPosition, mFirstTop, getContentBottom() + mLayoutMargin);
+    if (getChildCount() == 0) {
+      return;
+    }
+    //数据减少后底部可能留出空白，整体下移
+    final int gap = getContentBottom() - getChildAt(getChildCount() - 1).getBottom();
+    if (gap > 0 && mFirstPosition + getChildCount() == itemCount) {
+      fillUp(mFirstPosition - 1, getChildAt(0).getTop(), getPaddingTop() - mLayoutMargin - gap);
+      final int offset = Math.min(gap, getPaddingTop() - getChildAt(0).getTop());
+      for (int i = 0; i < getChildCount(); ++i) {
+        getChildAt(i).offsetTopAndBottom(Math.max(offset, 0));
+      }
+    }
+    recycleOutside();
+  }
+
+  //可见区域的底部，子 View 布局在 getPaddingTop() 和它之间
+  private int getContentBottom() {
+    return getHeight() - getPaddingBottom();
+  }
+
+  //从 position 开始向下依次布局子 View，直到超过 limit
+  private void fillDown(int position, int top, int limit) {
+    final int itemCount = mAdapter.getItemCount();
+    while (position < itemCount && top < limit) {
+      final View child = obtainView(position, getChildCount());
+      child.layout(getPaddingLeft(), top, getPaddingLeft() + child.getMeasuredWidth(), top + child.getMeasuredHeight());
+      top += child.getMeasuredHeight();
+      ++position;
+    }
+  }
+
+  //从 position 开始向上依次布局子 View，直到超过 limit
+  private void fillUp(int position, int bottom, int limit) {
+    while (position >= 0 && bottom > limit) {
+      final View child = obtainView(position, 0);
+      child.layout(getPaddingLeft(), bottom - child.getMeasuredHeight(), getPaddingLeft() + child.getMeasuredWidth(), bottom);
+      bottom -= child.getMeasuredHeight();
+      mFirstPosition = position;
+      --position;
+    }
+  }
+
+  //取出一个可复用的子 View，绑定数据并测量后添加到 index，不触发 requestLayout
+  private View obtainView(int position, int index) {
+    final int lastIndex = mScrapViews.size() - 1;
+    final View child = lastIndex >= 0 ? mScrapViews.remove(lastIndex) : mAdapter.onCreateView(this);
+    mAdapter.onBindView(child, position);
+    ViewGroup.LayoutParams lp = child.getLayoutParams();
+    if (lp == null) {
+      lp = generateDefaultLayoutParams();
+    }
+    addViewInLayout(child, index, lp, true);
+    final int widthSpec = MeasureSpec.makeMeasureSpec(
+        Math.max(getWidth() - getPaddingLeft() - getPaddingRight(), 0), MeasureSpec.EXACTLY);
+    child.measure(widthSpec, getChildMeasureSpec(MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED), 0, lp.height));
+    return child;
+  }
+
+  //回收完全滑出布局区域的子 View
+  private void recycleOutside() {
+    while (getChildCount() > 1 && getChildAt(0).getBottom() < getPaddingTop() - mLayoutMargin) {
+      final View child = getChildAt(0);
+      removeViewsInLayout(0, 1);
+      mScrapViews.add(child);
+      ++mFirstPosition;
+    }
+    while (getChildCount() > 1 && getChildAt(getChildCount() - 1).getTop() > getContentBottom() + mLayoutMargin) {
+      final int index = getChildCount() - 1;
+      final View child = getChildAt(index);
+      removeViewsInLayout(index, 1);
+      mScrapViews.add(child);
+    }
+  }
+
   //限制滚动范围
   @Override
   public void scrollTo(int x, int y) {
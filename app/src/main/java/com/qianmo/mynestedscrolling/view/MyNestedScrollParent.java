@@ -62,6 +62,22 @@ public class MyNestedScrollParent extends LinearLayout implements NestedScrollin
     });
   }
 
+  //子 View 虚拟化时只布局可见区域，图片滚出后可见区域是除文字以外的全部高度，
+  //按这个高度重新测量子 View，否则隐藏图片后底部会留出 imgHeight 的空白
+  @Override
+  protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+    if (myNestedScrollChild.getAdapter() == null) {
+      return;
+    }
+    final LayoutParams lp = (LayoutParams) myNestedScrollChild.getLayoutParams();
+    final int height = getMeasuredHeight() - getPaddingTop() - getPaddingBottom()
+        - tv.getMeasuredHeight() - lp.topMargin - lp.bottomMargin;
+    myNestedScrollChild.measure(
+        MeasureSpec.makeMeasureSpec(myNestedScrollChild.getMeasuredWidth(), MeasureSpec.EXACTLY),
+        MeasureSpec.makeMeasureSpec(Math.max(height, 0), MeasureSpec.EXACTLY));
+  }
+
   //在此可以判断参数target是哪一个子view以及滚动的方向，然后决定是否要配合其进行嵌套滚动
   @Override
   public boolean onStartNestedScroll(View child, View target, int nestedScrollAxes) {
@@ -99,6 +115,8 @@ public class MyNestedScrollParent extends LinearLayout implements NestedScrollin
   }
 
   //返回值：是否消费了fling
+  //velocityY 与 dy 方向一致（手指向下为正）。不消费时 child 自己惯性滑动，每一帧的距离仍会先经过 onNestedPreScroll，
+  //父控件在那里显示或隐藏图片
   @Override
   public boolean onNestedPreFling(View target, float velocityX, float velocityY) {
     return false;
@@ -118,7 +136,7 @@ public class MyNestedScrollParent extends LinearLayout implements NestedScrollin
   //下拉的时候是否要向下滚动以显示图片
   public boolean showImg(int dy) {
     if (dy > 0) {
-      if (getScrollY() > 0 && myNestedScrollChild.getScrollY() == 0) {
+      if (getScrollY() > 0 && myNestedScrollChild.isScrolledToTop()) {
         return true;
       }
     }
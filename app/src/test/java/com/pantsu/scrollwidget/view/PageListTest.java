@@ -0,0 +1,137 @@
+package com.pantsu.scrollwidget.view;
+
+import static org.junit.Assert.assertEquals;
+import static org.robolectric.Shadows.shadowOf;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import android.app.Activity;
+import android.os.Looper;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.pantsu.scrollwidget.R;
+import com.pantsu.scrollwidget.view.data.InMemoryPageSource;
+import com.pantsu.scrollwidget.view.data.MessageStore;
+import com.pantsu.scrollwidget.view.data.MyListAdapter;
+import com.pantsu.scrollwidget.view.view.NestedScrollLoadingLayout;
+
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+
+/**
+ * 用 TestScheduler 控制 {@link InMemoryPageSource} 的模拟耗时，检查分块加载、滑动窗口裁剪后列表中的 id 区间。
+ * 条目高 40dp，mdpi 下一屏约 16 条。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29, qualifiers = "w360dp-h640dp-mdpi")
+@LooperMode(LooperMode.Mode.PAUSED)
+public class PageListTest {
+
+  /** 与示例页面相同的模拟耗时和分块大小 */
+  private static final long LOAD_OLD_DELAY_MS = 300L;
+  private static final long LOAD_NEW_DELAY_MS = 5000L;
+  private static final int LOAD_CHUNK_SIZE = 5;
+  private static final long STEP_MS = 25L;
+
+  private final TestScheduler mScheduler = new TestScheduler();
+  private RecyclerView mRecyclerView;
+  private MyListAdapter mAdapter;
+  private PageList mPageList;
+
+  @Before
+  public void setUp() {
+    Activity activity = Robolectric.buildActivity(Activity.class).setup().get();
+    activity.setContentView(R.layout.activity_main_copy);
+    NestedScrollLoadingLayout layout = activity.findViewById(R.id.refresh_layout);
+    mRecyclerView = activity.findViewById(R.id.recycler_view);
+    mAdapter = new MyListAdapter();
+    mRecyclerView.setLayoutManager(new LinearLayoutManager(activity));
+    mRecyclerView.setAdapter(mAdapter);
+
+    InMemoryPageSource source = new InMemoryPageSource(0, 1000, mScheduler);
+    source.setDelays(LOAD_OLD_DELAY_MS, LOAD_NEW_DELAY_MS);
+    source.setChunkSize(LOAD_CHUNK_SIZE);
+    mPageList = new PageList(layout, mRecyclerView, mAdapter, null, source,
+        Schedulers.trampoline(), Schedulers.trampoline());
+    advance(LOAD_OLD_DELAY_MS);
+    assertRange(100, 139);
+  }
+
+  @After
+  public void tearDown() {
+    mPageList.release();
+  }
+
+  @Test
+  public void trimCancelsLoadAtTrimmedEnd() {
+    mPageList.setMaxWindowSize(40);
+    // 向前加载一页，可见区域离底部不足一页，不裁剪
+    mPageList.loadMoreOld();
+    advance(LOAD_OLD_DELAY_MS);
+    assertRange(80, 139);
+
+    // 回到顶部后底部的加载还在进行，此时向前加载会裁掉底部的一页
+    mRecyclerView.scrollToPosition(0);
+    advance(STEP_MS);
+    mPageList.loadMoreNew();
+    mPageList.loadMoreOld();
+    advance(LOAD_OLD_DELAY_MS);
+    assertRange(60, 119);
+
+    // 底部的加载接在被裁掉的 139 之后，结果必须丢弃
+    advance(LOAD_NEW_DELAY_MS);
+    assertRange(60, 119);
+
+    // 重新加载时从裁剪后的边界继续
+    mPageList.loadMoreNew();
+    advance(LOAD_NEW_DELAY_MS);
+    assertRange(60, 139);
+  }
+
+  @Test
+  public void liveMessagesAppendOnlyAtLiveEdge() {
+    PublishProcessor<Integer> live = PublishProcessor.create();
+    mPageList.subscribeLive(live.onBackpressureBuffer());
+
+    // 首页是完整的一页，最新一端未知；推送紧接在列表底部之后，说明列表就在最新一端
+    live.onNext(139);
+    live.onNext(140);
+    live.onNext(141);
+    advance(STEP_MS);
+    assertRange(100, 141);
+
+    // 漏掉了 142，与列表之间有空缺，丢弃这一批
+    live.onNext(143);
+    advance(STEP_MS);
+    assertRange(100, 141);
+  }
+
+  /** 推进数据源的模拟耗时，同时执行主线程上到期的回调和帧，让每一块之间都完成布局 */
+  private void advance(long ms) {
+    for (long elapsed = 0; elapsed < ms; elapsed += STEP_MS) {
+      mScheduler.advanceTimeBy(STEP_MS, TimeUnit.MILLISECONDS);
+      shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(STEP_MS));
+    }
+  }
+
+  /** 列表中恰好是 [from, to] 区间内连续的 id */
+  private void assertRange(int from, int to) {
+    final MessageStore data = mAdapter.getData();
+    assertEquals(to - from + 1, data.size());
+    for (int i = 0; i < data.size(); ++i) {
+      assertEquals(from + i, data.getId(i));
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package com.pantsu.scrollwidget.view.data;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subscribers.TestSubscriber;
+
+public class InMemoryPageSourceTest {
+
+  private final InMemoryPageSource mSource = new InMemoryPageSource(0, 99);
+
+  @Test
+  public void pagesAreContiguousAndExcludeAnchor() {
+    assertArrayEquals(new int[]{47, 48, 49}, mSource.before(50, 3).blockingGet());
+    assertArrayEquals(new int[]{51, 52, 53}, mSource.after(50, 3).blockingGet());
+    assertArrayEquals(new int[]{48, 49, 50, 51}, mSource.around(50, 4).blockingGet());
+  }
+
+  @Test
+  public void pagesAreClampedAtBounds() {
+    assertArrayEquals(new int[]{0, 1}, mSource.before(2, 20).blockingGet());
+    assertArrayEquals(new int[0], mSource.before(0, 20).blockingGet());
+    assertArrayEquals(new int[]{98, 99}, mSource.after(97, 20).blockingGet());
+    assertArrayEquals(new int[0], mSource.after(99, 20).blockingGet());
+  }
+
+  @Test
+  public void delaysRunOnGivenScheduler() {
+    TestScheduler scheduler = new TestScheduler();
+    InMemoryPageSource source = new InMemoryPageSource(0, 99, scheduler);
+    source.setDelays(300, 5000);
+
+    TestObserver<int[]> before = source.before(10, 1).test();
+    TestObserver<int[]> after = source.after(10, 1).test();
+    scheduler.advanceTimeBy(300, TimeUnit.MILLISECONDS);
+    before.assertValueCount(1);
+    after.assertNoValues();
+    scheduler.advanceTimeBy(4700, TimeUnit.MILLISECONDS);
+    after.assertValueCount(1);
+  }
+
+  @Test
+  public void streamsStartNextToAnchor() {
+    mSource.setChunkSize(2);
+    assertChunks(mSource.streamBefore(50, 5).test(), new int[]{48, 49}, new int[]{46, 47}, new int[]{45});
+    assertChunks(mSource.streamAfter(50, 3).test(), new int[]{51, 52}, new int[]{53});
+  }
+
+  private static void assertChunks(TestSubscriber<int[]> subscriber, int[]... chunks) {
+    subscriber.assertComplete().assertValueCount(chunks.length);
+    for (int i = 0; i < chunks.length; ++i) {
+      assertArrayEquals(chunks[i], subscriber.values().get(i));
+    }
+  }
+}
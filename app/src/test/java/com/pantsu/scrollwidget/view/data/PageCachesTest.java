@@ -0,0 +1,39 @@
+package com.pantsu.scrollwidget.view.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.content.Context;
+import androidx.test.core.app.ApplicationProvider;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29)
+public class PageCachesTest {
+
+  @Test
+  public void conversationsDoNotShareRanges() {
+    Context context = ApplicationProvider.getApplicationContext();
+    ConversationPageCache first = PageCaches.forConversation(context, "first");
+    ConversationPageCache second = PageCaches.forConversation(context, "second/with:odd chars");
+    assertNotSame(PageCaches.getPageFile(context, "first"), PageCaches.getPageFile(context, "second/with:odd chars"));
+
+    first.put(100, 102, new int[]{100, 101, 102});
+    assertNull(second.get(100, 102));
+
+    // 内存缓存淘汰后走磁盘缓存，同样不能读到其他会话的页，也不能被放进当前会话的内存缓存
+    PageCaches.getMemoryCache().evictAll();
+    assertNull(second.get(100, 102));
+    assertArrayEquals(new int[]{100, 101, 102}, first.get(100, 102));
+
+    second.put(100, 102, new int[]{7, 8, 9});
+    PageCaches.getMemoryCache().evictAll();
+    assertArrayEquals(new int[]{100, 101, 102}, first.get(100, 102));
+    assertArrayEquals(new int[]{7, 8, 9}, second.get(100, 102));
+  }
+}
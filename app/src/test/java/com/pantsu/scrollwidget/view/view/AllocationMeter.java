@@ -0,0 +1,34 @@
+package com.pantsu.scrollwidget.view.view;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * 统计当前线程在一段代码中分配的字节数，依赖 HotSpot 的 com.sun.management.ThreadMXBean。
+ * 结果已扣除 start/stop 本身的分配，空的一段代码计为 0。
+ */
+final class AllocationMeter {
+
+  private final com.sun.management.ThreadMXBean mThreadBean =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  private final long mThreadId = Thread.currentThread().getId();
+  private final long mOverhead;
+  private long mStart;
+
+  AllocationMeter() {
+    mThreadBean.setThreadAllocatedMemoryEnabled(true);
+    long overhead = Long.MAX_VALUE;
+    for (int i = 0; i < 16; ++i) {
+      start();
+      overhead = Math.min(overhead, mThreadBean.getThreadAllocatedBytes(mThreadId) - mStart);
+    }
+    mOverhead = overhead;
+  }
+
+  void start() {
+    mStart = mThreadBean.getThreadAllocatedBytes(mThreadId);
+  }
+
+  long stop() {
+    return Math.max(0L, mThreadBean.getThreadAllocatedBytes(mThreadId) - mStart - mOverhead);
+  }
+}
@@ -0,0 +1,71 @@
+package com.pantsu.scrollwidget.view.view;
+
+import static org.robolectric.Shadows.shadowOf;
+
+import java.time.Duration;
+
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * 在 Robolectric 中向 View 合成触摸事件：每个事件之间推进主线程时钟并执行到期的帧回调，
+ * 这样 RecyclerView 的 VelocityTracker、fling 和属性动画都能按真实时间运行。
+ */
+final class GestureDriver {
+
+  static final long FRAME_MS = 16L;
+
+  private final View mView;
+  private long mDownTime;
+  private float mX;
+  private float mY;
+
+  GestureDriver(View view) {
+    mView = view;
+  }
+
+  void down(float x, float y) {
+    mDownTime = SystemClock.uptimeMillis();
+    mX = x;
+    mY = y;
+    dispatch(MotionEvent.ACTION_DOWN);
+  }
+
+  /** 分 steps 次把手指移动 dy（向下为正），每次间隔 stepMs */
+  void moveBy(float dy, int steps, long stepMs) {
+    for (int i = 0; i < steps; ++i) {
+      idle(stepMs);
+      mY += dy / steps;
+      dispatch(MotionEvent.ACTION_MOVE);
+    }
+  }
+
+  void up() {
+    idle(FRAME_MS);
+    dispatch(MotionEvent.ACTION_UP);
+  }
+
+  /** 从当前手指位置开始，预先生成 count 个来回移动的 MOVE 事件，用于分配量统计 */
+  MotionEvent[] obtainMoves(int count, float amplitude) {
+    MotionEvent[] events = new MotionEvent[count];
+    long eventTime = SystemClock.uptimeMillis();
+    for (int i = 0; i < count; ++i) {
+      eventTime += FRAME_MS;
+      float y = mY + ((i & 1) == 0 ? amplitude : 0f);
+      events[i] = MotionEvent.obtain(mDownTime, eventTime, MotionEvent.ACTION_MOVE, mX, y, 0);
+    }
+    return events;
+  }
+
+  static void idle(long ms) {
+    shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(ms));
+  }
+
+  private void dispatch(int action) {
+    MotionEvent event = MotionEvent.obtain(mDownTime, SystemClock.uptimeMillis(), action, mX, mY, 0);
+    mView.dispatchTouchEvent(event);
+    event.recycle();
+  }
+}
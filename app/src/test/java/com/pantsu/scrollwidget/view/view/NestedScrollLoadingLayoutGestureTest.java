@@ -0,0 +1,301 @@
+package com.pantsu.scrollwidget.view.view;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import android.app.Activity;
+import android.view.MotionEvent;
+import android.view.View;
+import androidx.core.view.ViewCompat;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.pantsu.scrollwidget.R;
+import com.pantsu.scrollwidget.view.data.MyListAdapter;
+import com.pantsu.scrollwidget.view.view.NestedScrollLoadingLayout.Direction;
+
+/**
+ * 在 JVM 上回放拖动和 FLING 手势，检查 {@link NestedScrollLoadingLayout} 的最终位置和加载事件，
+ * 并限制触摸热路径每个事件的分配量。
+ * <p>
+ * 分配预算（字节/事件）可以通过 gradle 属性调整，例如
+ * {@code ./gradlew :app:testDebugUnitTest -Pscrollwidget.allocBudget.dispatchTouchEvent=64}。
+ * onNestedPreScroll 只走状态机和 setScrollY，预算为 0；dispatchTouchEvent 统计的是比直接分发给列表多出的分配，
+ * 余量留给 ViewGroup 分发时调用 Robolectric 模拟的 MotionEvent native 方法产生的装箱。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29, qualifiers = "w360dp-h640dp-mdpi")
+@LooperMode(LooperMode.Mode.PAUSED)
+public class NestedScrollLoadingLayoutGestureTest {
+
+  private static final long DISPATCH_TOUCH_EVENT_BUDGET =
+      Long.getLong("scrollwidget.allocBudget.dispatchTouchEvent", 128L);
+  private static final long NESTED_PRE_SCROLL_BUDGET =
+      Long.getLong("scrollwidget.allocBudget.onNestedPreScroll", 0L);
+
+  private static final int ITEM_COUNT = 60;
+  private static final int MEASURED_EVENTS = 200;
+  /** activity_main_copy.xml 中 LoadingView 高 40dp，mdpi 下即 40px */
+  private static final int LOADING_VIEW_HEIGHT = 40;
+
+  private NestedScrollLoadingLayout mLayout;
+  private RecyclerView mRecyclerView;
+  private GestureDriver mDriver;
+  private final List<Direction> mLoadEvents = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    Activity activity = Robolectric.buildActivity(Activity.class).setup().get();
+    activity.setContentView(R.layout.activity_main_copy);
+    mLayout = activity.findViewById(R.id.refresh_layout);
+    mRecyclerView = activity.findViewById(R.id.recycler_view);
+
+    MyListAdapter adapter = new MyListAdapter();
+    int[] ids = new int[ITEM_COUNT];
+    for (int i = 0; i < ids.length; ++i) {
+      ids[i] = i;
+    }
+    adapter.submitData(ids);
+    mRecyclerView.setLayoutManager(new LinearLayoutManager(activity));
+    mRecyclerView.setAdapter(adapter);
+    mLayout.addOnLoadListener(mLoadEvents::add);
+
+    mDriver = new GestureDriver(mLayout);
+    GestureDriver.idle(GestureDriver.FRAME_MS);
+  }
+
+  @Test
+  public void initialPositionHidesLoadingViews() {
+    assertEquals(LOADING_VIEW_HEIGHT, mLayout.getScrollY());
+    assertEquals(0, mLayout.getTargetViewOffset());
+  }
+
+  @Test
+  public void targetFillsLayoutAndFollowsResize() {
+    assertEquals(mLayout.getHeight(), mRecyclerView.getHeight());
+
+    // 模拟软键盘弹出：容器变矮，列表随之变矮，位置保持在起始位置
+    final int height = mLayout.getHeight() - 200;
+    mLayout.measure(View.MeasureSpec.makeMeasureSpec(mLayout.getWidth(), View.MeasureSpec.EXACTLY),
+        View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+    mLayout.layout(0, 0, mLayout.getWidth(), height);
+    assertEquals(height, mRecyclerView.getHeight());
+    assertEquals(LOADING_VIEW_HEIGHT, mLayout.getScrollY());
+
+    // LoadingView 变高后起始位置随之改变
+    final View topLoadingView = mLayout.getChildAt(0);
+    topLoadingView.getLayoutParams().height = 2 * LOADING_VIEW_HEIGHT;
+    topLoadingView.requestLayout();
+    GestureDriver.idle(GestureDriver.FRAME_MS);
+    assertEquals(2 * LOADING_VIEW_HEIGHT, mLayout.getScrollY());
+    assertEquals(2 * LOADING_VIEW_HEIGHT, mRecyclerView.getTop());
+  }
+
+  @Test
+  public void dragDownAtTopRevealsTopLoadingViewAndLoads() {
+    mLayout.setEdgeVerificationEnabled(true);
+    mDriver.down(180, 200);
+    mDriver.moveBy(120, 12, GestureDriver.FRAME_MS);
+    assertEquals(0, mLayout.getScrollY());
+
+    mDriver.up();
+    GestureDriver.idle(1000);
+    assertTrue(mLayout.isLoading());
+    assertEquals(0, mLayout.getScrollY());
+    assertEquals(listOf(Direction.TOP), mLoadEvents);
+
+    mLayout.stopLoading(false);
+    assertEquals(LOADING_VIEW_HEIGHT, mLayout.getScrollY());
+    assertEquals(0, mLayout.getEdgeMismatchCount());
+  }
+
+  @Test
+  public void translationModeMovesChildrenInsteadOfScrolling() {
+    mLayout.setOffsetMode(NestedScrollLoadingLayout.OffsetMode.TRANSLATION);
+    assertEquals(0, mLayout.getScrollY());
+    assertEquals(-LOADING_VIEW_HEIGHT, (int) mRecyclerView.getTranslationY());
+    assertEquals(LOADING_VIEW_HEIGHT, mLayout.computeVerticalScrollOffset());
+
+    mDriver.down(180, 200);
+    mDriver.moveBy(120, 12, GestureDriver.FRAME_MS);
+    assertEquals(0, mLayout.getScrollY());
+    assertEquals(0, (int) mRecyclerView.getTranslationY());
+    assertEquals(LOADING_VIEW_HEIGHT, mLayout.getTargetViewOffset());
+    assertTrue(mLayout.canScrollVertically(1));
+
+    mDriver.up();
+    GestureDriver.idle(1000);
+    assertEquals(listOf(Direction.TOP), mLoadEvents);
+    mLayout.stopLoading(true);
+    GestureDriver.idle(1000);
+    assertEquals(-LOADING_VIEW_HEIGHT, (int) mRecyclerView.getTranslationY());
+    assertEquals(0, mLayout.getScrollY());
+  }
+
+  @Test
+  public void shortDragResetsWithoutLoading() {
+    mDriver.down(180, 200);
+    // 超过 RecyclerView 的 touchSlop 后只多拖动几个像素，不足 LoadingView 的 touchSlop
+    mDriver.moveBy(10, 1, GestureDriver.FRAME_MS);
+    mDriver.moveBy(2, 1, 200);
+    mDriver.up();
+    GestureDriver.idle(1000);
+    assertEquals(LOADING_VIEW_HEIGHT, mLayout.getScrollY());
+    assertTrue(mLoadEvents.isEmpty());
+  }
+
+  @Test
+  public void unconsumedScrollIsReportedAsConsumed() {
+    final int[] consumed = new int[2];
+    mLayout.onNestedScroll(mRecyclerView, 0, 0, 0, -30, ViewCompat.TYPE_TOUCH, consumed);
+    assertEquals(-30, consumed[1]);
+    assertEquals(LOADING_VIEW_HEIGHT - 30, mLayout.getScrollY());
+
+    // 超出 LoadingView 高度的部分不消费，留给列表处理
+    consumed[1] = 0;
+    mLayout.onNestedScroll(mRecyclerView, 0, 0, 0, -30, ViewCompat.TYPE_TOUCH, consumed);
+    assertEquals(-10, consumed[1]);
+    assertEquals(0, mLayout.getScrollY());
+  }
+
+  @Test
+  public void flingToBottomRevealsBottomLoadingViewAndLoads() {
+    mLayout.setEdgeVerificationEnabled(true);
+    mDriver.down(180, 600);
+    mDriver.moveBy(-500, 5, 10);
+    mDriver.up();
+    GestureDriver.idle(5000);
+
+    assertTrue(!mRecyclerView.canScrollVertically(1));
+    assertEquals(listOf(Direction.BOTTOM), mLoadEvents);
+    assertEquals(2 * LOADING_VIEW_HEIGHT, mLayout.getScrollY());
+    assertEquals(0, mLayout.getEdgeMismatchCount());
+  }
+
+  @Test
+  public void edgeStateFollowsAdapterChanges() {
+    mRecyclerView.scrollToPosition(ITEM_COUNT - 1);
+    GestureDriver.idle(GestureDriver.FRAME_MS);
+    final int[] consumed = new int[2];
+    // 不足 touchSlop，松手后直接复位
+    mLayout.onNestedScroll(mRecyclerView, 0, 0, 0, 5, ViewCompat.TYPE_TOUCH, consumed);
+    assertEquals(5, consumed[1]);
+    mLayout.onStopNestedScroll(mRecyclerView, ViewCompat.TYPE_TOUCH);
+    assertEquals(LOADING_VIEW_HEIGHT, mLayout.getScrollY());
+
+    // 追加数据后列表不再位于底部，缓存的边界状态需要失效，剩余距离不能再交给 LoadingView
+    ((MyListAdapter) mRecyclerView.getAdapter()).appendData(new int[]{ITEM_COUNT, ITEM_COUNT + 1, ITEM_COUNT + 2});
+    GestureDriver.idle(GestureDriver.FRAME_MS);
+    assertTrue(mRecyclerView.canScrollVertically(1));
+    consumed[1] = 0;
+    mLayout.onNestedScroll(mRecyclerView, 0, 0, 0, 5, ViewCompat.TYPE_TOUCH, consumed);
+    assertEquals(0, consumed[1]);
+  }
+
+  @Test
+  public void prefetchRearmsWhenWindowIsFull() {
+    final List<Direction> prefetchEvents = new ArrayList<>();
+    mLayout.setPrefetchDistance(5);
+    mLayout.addOnPrefetchListener(prefetchEvents::add);
+    final MyListAdapter adapter = (MyListAdapter) mRecyclerView.getAdapter();
+
+    mRecyclerView.scrollBy(0, 100000);
+    GestureDriver.idle(GestureDriver.FRAME_MS);
+    assertEquals(listOf(Direction.BOTTOM), prefetchEvents);
+
+    // 加载中来回滑动不重复通知
+    mRecyclerView.scrollBy(0, -100);
+    mRecyclerView.scrollBy(0, 100);
+    assertEquals(listOf(Direction.BOTTOM), prefetchEvents);
+
+    // 窗口已满：追加一页的同时裁掉头部一页，条目总数不变，仍然可以再次预加载
+    int[] page = new int[20];
+    for (int i = 0; i < page.length; ++i) {
+      page[i] = ITEM_COUNT + i;
+    }
+    adapter.appendData(page);
+    adapter.removeFirstData(page.length);
+    GestureDriver.idle(GestureDriver.FRAME_MS);
+    assertEquals(ITEM_COUNT, adapter.getItemCount());
+    mRecyclerView.scrollBy(0, 100000);
+    GestureDriver.idle(GestureDriver.FRAME_MS);
+    assertEquals(listOf(Direction.BOTTOM, Direction.BOTTOM), prefetchEvents);
+
+    // 加载失败时数据不变，结束加载后同样可以再次预加载
+    mLayout.stopLoading(false);
+    mRecyclerView.scrollBy(0, -100);
+    mRecyclerView.scrollBy(0, 100);
+    assertEquals(listOf(Direction.BOTTOM, Direction.BOTTOM, Direction.BOTTOM), prefetchEvents);
+  }
+
+  @Test
+  public void dispatchTouchEventStaysWithinAllocationBudget() {
+    mDriver.down(180, 200);
+    mDriver.moveBy(60, 6, GestureDriver.FRAME_MS);
+    AllocationMeter meter = new AllocationMeter();
+
+    // 基准：同样的事件换算到列表的坐标系后直接交给列表，嵌套滚动仍然回调到 mLayout
+    long baseline = 0L;
+    for (MotionEvent move : mDriver.obtainMoves(MEASURED_EVENTS, 8f)) {
+      move.offsetLocation(0, mLayout.getScrollY() - mRecyclerView.getTop());
+      meter.start();
+      mRecyclerView.dispatchTouchEvent(move);
+      baseline += meter.stop();
+      move.recycle();
+    }
+    GestureDriver.idle(MEASURED_EVENTS * GestureDriver.FRAME_MS);
+
+    long allocated = 0L;
+    for (MotionEvent move : mDriver.obtainMoves(MEASURED_EVENTS, 8f)) {
+      meter.start();
+      mLayout.dispatchTouchEvent(move);
+      allocated += meter.stop();
+      move.recycle();
+    }
+    assertWithinBudget("dispatchTouchEvent", allocated - baseline, DISPATCH_TOUCH_EVENT_BUDGET);
+  }
+
+  @Test
+  public void onNestedPreScrollStaysWithinAllocationBudget() {
+    mDriver.down(180, 200);
+    mDriver.moveBy(20, 2, GestureDriver.FRAME_MS);
+    final int[] consumed = new int[2];
+
+    AllocationMeter meter = new AllocationMeter();
+    long allocated = 0L;
+    for (int i = 0; i < MEASURED_EVENTS; ++i) {
+      final int dy = (i & 1) == 0 ? -6 : 6;
+      consumed[1] = 0;
+      meter.start();
+      mLayout.onNestedPreScroll(mRecyclerView, 0, dy, consumed, ViewCompat.TYPE_TOUCH);
+      allocated += meter.stop();
+      assertEquals(dy, consumed[1]);
+    }
+    assertWithinBudget("onNestedPreScroll", allocated, NESTED_PRE_SCROLL_BUDGET);
+  }
+
+  private static void assertWithinBudget(String name, long allocated, long budgetPerEvent) {
+    final long perEvent = allocated / MEASURED_EVENTS;
+    assertTrue(name + " allocated " + perEvent + " bytes/event, budget is " + budgetPerEvent,
+        perEvent <= budgetPerEvent);
+  }
+
+  private static List<Direction> listOf(Direction... directions) {
+    List<Direction> list = new ArrayList<>();
+    for (Direction direction : directions) {
+      list.add(direction);
+    }
+    return list;
+  }
+}
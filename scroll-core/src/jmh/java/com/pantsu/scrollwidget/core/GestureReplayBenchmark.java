@@ -0,0 +1,75 @@
+package com.pantsu.scrollwidget.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 回放 src/jmh/resources/gestures 下录制的手势，衡量 {@link LoadingStateMachine} 的吞吐量。
+ * <p>
+ * 主指标为每秒回放的手势数，辅助指标 events 为每秒处理的事件数；配合 -prof gc 的
+ * gc.alloc.rate.norm 可以得到每次回放的分配字节数，期望为 0。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GestureReplayBenchmark {
+
+  private static final int LOADING_VIEW_HEIGHT = 120;
+  private static final int TOUCH_SLOP = 24;
+
+  @Param({"pull_top", "pull_bottom", "scroll_fling"})
+  public String gesture;
+
+  private GestureRecording mRecording;
+  private GestureReplayer mReplayer;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class EventCounter {
+    public long events;
+
+    @Setup(Level.Iteration)
+    public void clear() {
+      events = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() throws IOException {
+    final String path = "/gestures/" + gesture + ".txt";
+    try (InputStream in = GestureReplayBenchmark.class.getResourceAsStream(path)) {
+      if (in == null) {
+        throw new IOException("missing recording " + path);
+      }
+      mRecording = GestureRecording.parse(gesture, new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+    mReplayer = new GestureReplayer(LOADING_VIEW_HEIGHT, LOADING_VIEW_HEIGHT, TOUCH_SLOP);
+  }
+
+  @Benchmark
+  public int replay(EventCounter counter) {
+    mReplayer.reset();
+    counter.events += mRecording.getEventCount();
+    return mReplayer.replay(mRecording);
+  }
+}
@@ -0,0 +1,7 @@
+package com.pantsu.scrollwidget.core;
+
+/** LoadingView 所在的边界 */
+public enum Edge {
+  TOP,
+  BOTTOM
+}
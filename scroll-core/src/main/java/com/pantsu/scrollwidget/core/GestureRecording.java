@@ -0,0 +1,163 @@
+package com.pantsu.scrollwidget.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * 录制下来的一段手势事件流，供 {@link GestureReplayer} 回放。
+ * <p>
+ * 每个事件对应视图层的一次嵌套滚动回调，dy 向上滚动内容为正。
+ * 文本格式每行一个事件，# 开头为注释，edges 取值为 none/top/bottom/both，表示事件发生时列表所处的边界：
+ * <pre>
+ * prescroll &lt;dy&gt; &lt;edges&gt;           拖动时列表滚动前由父容器先处理
+ * scroll &lt;dyUnconsumed&gt; &lt;edges&gt;     拖动时列表到达边界后剩余的距离
+ * stop &lt;edges&gt;                     手指抬起，本次嵌套滚动结束
+ * fling &lt;dyUnconsumed&gt; &lt;edges&gt;      FLING 时列表到达边界后剩余的距离
+ * </pre>
+ * 事件在内存中以 int 数组平铺存放，回放时不分配对象。
+ */
+public final class GestureRecording {
+
+  static final int OP_PRE_SCROLL = 0;
+  static final int OP_SCROLL = 1;
+  static final int OP_STOP = 2;
+  static final int OP_FLING = 3;
+
+  static final int EDGE_TOP = 1;
+  static final int EDGE_BOTTOM = 1 << 1;
+
+  /** 每个事件占用的 int 个数：op, dy, edges */
+  static final int STRIDE = 3;
+
+  private static final String[] OP_NAMES = {"prescroll", "scroll", "stop", "fling"};
+  private static final String[] EDGE_NAMES = {"none", "top", "bottom", "both"};
+
+  private final String mName;
+  private final int[] mEvents;
+  private final int mEventCount;
+
+  private GestureRecording(String name, int[] events, int eventCount) {
+    mName = name;
+    mEvents = events;
+    mEventCount = eventCount;
+  }
+
+  public String getName() {
+    return mName;
+  }
+
+  public int getEventCount() {
+    return mEventCount;
+  }
+
+  int[] getEvents() {
+    return mEvents;
+  }
+
+  public static GestureRecording parse(String name, Reader reader) throws IOException {
+    Builder builder = new Builder();
+    BufferedReader lines = new BufferedReader(reader);
+    String line;
+    int lineNumber = 0;
+    while ((line = lines.readLine()) != null) {
+      ++lineNumber;
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] parts = line.split("\\s+");
+      try {
+        builder.add(parts);
+      } catch (RuntimeException e) {
+        throw new IOException(name + ":" + lineNumber + ": malformed event '" + line + "'", e);
+      }
+    }
+    return builder.build(name);
+  }
+
+  public void write(Writer writer) throws IOException {
+    for (int i = 0; i < mEventCount * STRIDE; i += STRIDE) {
+      final int op = mEvents[i];
+      writer.write(OP_NAMES[op]);
+      if (op != OP_STOP) {
+        writer.write(" " + mEvents[i + 1]);
+      }
+      writer.write(" " + EDGE_NAMES[mEvents[i + 2]]);
+      writer.write('\n');
+    }
+  }
+
+  /** 按时间顺序追加事件，构建一段录制，可用于在设备上采集手势 */
+  public static final class Builder {
+    private int[] mEvents = new int[64 * STRIDE];
+    private int mEventCount;
+
+    public Builder preScroll(int dy, boolean atTop, boolean atBottom) {
+      return add(OP_PRE_SCROLL, dy, atTop, atBottom);
+    }
+
+    public Builder scroll(int dyUnconsumed, boolean atTop, boolean atBottom) {
+      return add(OP_SCROLL, dyUnconsumed, atTop, atBottom);
+    }
+
+    public Builder stop(boolean atTop, boolean atBottom) {
+      return add(OP_STOP, 0, atTop, atBottom);
+    }
+
+    public Builder fling(int dyUnconsumed, boolean atTop, boolean atBottom) {
+      return add(OP_FLING, dyUnconsumed, atTop, atBottom);
+    }
+
+    public GestureRecording build(String name) {
+      return new GestureRecording(name, Arrays.copyOf(mEvents, mEventCount * STRIDE), mEventCount);
+    }
+
+    private Builder add(int op, int dy, boolean atTop, boolean atBottom) {
+      final int edges = (atTop ? EDGE_TOP : 0) | (atBottom ? EDGE_BOTTOM : 0);
+      final int index = mEventCount * STRIDE;
+      if (index + STRIDE > mEvents.length) {
+        mEvents = Arrays.copyOf(mEvents, mEvents.length * 2);
+      }
+      mEvents[index] = op;
+      mEvents[index + 1] = dy;
+      mEvents[index + 2] = edges;
+      ++mEventCount;
+      return this;
+    }
+
+    private void add(String[] parts) {
+      final int op = indexOf(OP_NAMES, parts[0]);
+      final int edges = indexOf(EDGE_NAMES, parts[parts.length - 1]);
+      final boolean atTop = (edges & EDGE_TOP) != 0;
+      final boolean atBottom = (edges & EDGE_BOTTOM) != 0;
+      switch (op) {
+        case OP_PRE_SCROLL:
+          preScroll(Integer.parseInt(parts[1]), atTop, atBottom);
+          break;
+        case OP_SCROLL:
+          scroll(Integer.parseInt(parts[1]), atTop, atBottom);
+          break;
+        case OP_STOP:
+          stop(atTop, atBottom);
+          break;
+        case OP_FLING:
+          fling(Integer.parseInt(parts[1]), atTop, atBottom);
+          break;
+        default:
+          throw new IllegalArgumentException(parts[0]);
+      }
+    }
+
+    private static int indexOf(String[] names, String name) {
+      for (int i = 0; i < names.length; ++i) {
+        if (names[i].equals(name)) {
+          return i;
+        }
+      }
+      throw new IllegalArgumentException(name);
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package com.pantsu.scrollwidget.core;
+
+/**
+ * 在 JVM 上把 {@link GestureRecording} 回放到 {@link LoadingStateMachine}，调用方式与 NestedScrollLoadingLayout 的嵌套滚动回调一致：
+ * 加载中忽略拖动产生的事件，FLING 到达边界时直接开始加载，加载动画直接跳到终点。
+ */
+public final class GestureReplayer implements LoadingStateMachine.EdgeState {
+
+  private final LoadingStateMachine mMachine;
+  private final int mTouchSlop;
+  private int mEdges;
+  private int mEventCount;
+  private int mLoadCount;
+
+  public GestureReplayer(int topViewHeight, int bottomViewHeight, int touchSlop) {
+    mMachine = new LoadingStateMachine(this);
+    mMachine.setLoadingViewHeights(topViewHeight, bottomViewHeight);
+    mTouchSlop = touchSlop;
+  }
+
+  public LoadingStateMachine getMachine() {
+    return mMachine;
+  }
+
+  /** 累计回放的事件数 */
+  public int getEventCount() {
+    return mEventCount;
+  }
+
+  /** 累计触发的加载次数 */
+  public int getLoadCount() {
+    return mLoadCount;
+  }
+
+  /** 回放一段录制，返回结束时的位置 */
+  public int replay(GestureRecording recording) {
+    final int[] events = recording.getEvents();
+    final int end = recording.getEventCount() * GestureRecording.STRIDE;
+    for (int i = 0; i < end; i += GestureRecording.STRIDE) {
+      mEdges = events[i + 2];
+      dispatch(events[i], events[i + 1]);
+    }
+    mEventCount += recording.getEventCount();
+    return mMachine.getPosition();
+  }
+
+  /** 结束加载并回到起始位置，便于重复回放 */
+  public void reset() {
+    mMachine.stopLoading();
+    // 结束录制中未结束的手势
+    mMachine.onTouchScrollFinished(mTouchSlop);
+    mMachine.setPosition(mMachine.getStartPosition());
+  }
+
+  private void dispatch(int op, int dy) {
+    if (op == GestureRecording.OP_FLING) {
+      final Edge edge = mMachine.onFlingOverscroll(dy);
+      if (edge != null) {
+        load(edge);
+      }
+      return;
+    }
+    // 视图层加载中不分发触摸事件，不会产生拖动的嵌套滚动
+    if (mMachine.isLoading()) {
+      return;
+    }
+    switch (op) {
+      case GestureRecording.OP_PRE_SCROLL:
+        mMachine.onNestedPreScroll(dy);
+        break;
+      case GestureRecording.OP_SCROLL:
+        mMachine.onNestedScroll(dy);
+        break;
+      case GestureRecording.OP_STOP:
+        apply(mMachine.onTouchScrollFinished(mTouchSlop));
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void apply(LoadingStateMachine.IdleAction action) {
+    switch (action) {
+      case RESET:
+        mMachine.setPosition(mMachine.getStartPosition());
+        break;
+      case LOAD_TOP:
+        load(Edge.TOP);
+        break;
+      case LOAD_BOTTOM:
+        load(Edge.BOTTOM);
+        break;
+      case NONE:
+      default:
+        break;
+    }
+  }
+
+  private void load(Edge edge) {
+    mMachine.startLoading(edge);
+    mMachine.setPosition(mMachine.getLoadPosition(edge));
+    ++mLoadCount;
+  }
+
+  @Override
+  public boolean isAtTop() {
+    return (mEdges & GestureRecording.EDGE_TOP) != 0;
+  }
+
+  @Override
+  public boolean isAtBottom() {
+    return (mEdges & GestureRecording.EDGE_BOTTOM) != 0;
+  }
+}
@@ -0,0 +1,158 @@
+package com.pantsu.scrollwidget.core;
+
+import java.util.Arrays;
+
+/**
+ * int 到 int 的开放寻址哈希表（线性探测），读写不装箱也不分配对象，查找为 O(1)。
+ * 删除使用向后移动的方式，不留下墓碑。
+ */
+public final class IntIntMap {
+
+  private static final int MIN_CAPACITY = 16;
+  /** 装载因子 1/2 */
+  private static final int LOAD_FACTOR_SHIFT = 1;
+
+  private int[] mKeys;
+  private int[] mValues;
+  private boolean[] mUsed;
+  private int mMask;
+  private int mSize;
+
+  public IntIntMap() {
+    this(MIN_CAPACITY);
+  }
+
+  public IntIntMap(int expectedSize) {
+    allocate(tableSizeFor(expectedSize));
+  }
+
+  public int size() {
+    return mSize;
+  }
+
+  public boolean isEmpty() {
+    return mSize == 0;
+  }
+
+  /** key 不存在时返回 defaultValue */
+  public int get(int key, int defaultValue) {
+    int slot = slot(key);
+    while (mUsed[slot]) {
+      if (mKeys[slot] == key) {
+        return mValues[slot];
+      }
+      slot = (slot + 1) & mMask;
+    }
+    return defaultValue;
+  }
+
+  public boolean containsKey(int key) {
+    int slot = slot(key);
+    while (mUsed[slot]) {
+      if (mKeys[slot] == key) {
+        return true;
+      }
+      slot = (slot + 1) & mMask;
+    }
+    return false;
+  }
+
+  public void put(int key, int value) {
+    int slot = slot(key);
+    while (mUsed[slot]) {
+      if (mKeys[slot] == key) {
+        mValues[slot] = value;
+        return;
+      }
+      slot = (slot + 1) & mMask;
+    }
+    mUsed[slot] = true;
+    mKeys[slot] = key;
+    mValues[slot] = value;
+    if (++mSize << LOAD_FACTOR_SHIFT > mKeys.length) {
+      rehash(mKeys.length << 1);
+    }
+  }
+
+  /** @return 是否存在并删除了 key */
+  public boolean remove(int key) {
+    int slot = slot(key);
+    while (mUsed[slot]) {
+      if (mKeys[slot] == key) {
+        shiftBack(slot);
+        --mSize;
+        return true;
+      }
+      slot = (slot + 1) & mMask;
+    }
+    return false;
+  }
+
+  public void clear() {
+    if (mSize == 0) {
+      return;
+    }
+    Arrays.fill(mUsed, false);
+    mSize = 0;
+  }
+
+  /** 预留空间，之后插入 expectedSize 个元素前不会再扩容 */
+  public void ensureCapacity(int expectedSize) {
+    final int capacity = tableSizeFor(expectedSize);
+    if (capacity > mKeys.length) {
+      rehash(capacity);
+    }
+  }
+
+  /** 删除 slot 后，把后面同一探测链上的元素前移，保持查找链连续 */
+  private void shiftBack(int slot) {
+    int gap = slot;
+    int next = (gap + 1) & mMask;
+    while (mUsed[next]) {
+      final int home = slot(mKeys[next]);
+      // home 不在 (gap, next] 区间内时，元素可以移动到 gap
+      if (((next - home) & mMask) >= ((next - gap) & mMask)) {
+        mKeys[gap] = mKeys[next];
+        mValues[gap] = mValues[next];
+        gap = next;
+      }
+      next = (next + 1) & mMask;
+    }
+    mUsed[gap] = false;
+  }
+
+  private void rehash(int capacity) {
+    final int[] keys = mKeys;
+    final int[] values = mValues;
+    final boolean[] used = mUsed;
+    allocate(capacity);
+    for (int i = 0; i < keys.length; ++i) {
+      if (used[i]) {
+        int slot = slot(keys[i]);
+        while (mUsed[slot]) {
+          slot = (slot + 1) & mMask;
+        }
+        mUsed[slot] = true;
+        mKeys[slot] = keys[i];
+        mValues[slot] = values[i];
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    mKeys = new int[capacity];
+    mValues = new int[capacity];
+    mUsed = new boolean[capacity];
+    mMask = capacity - 1;
+  }
+
+  private int slot(int key) {
+    final int h = key * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & mMask;
+  }
+
+  private static int tableSizeFor(int expectedSize) {
+    final int min = Math.max(MIN_CAPACITY, expectedSize << LOAD_FACTOR_SHIFT);
+    return Integer.highestOneBit(min - 1) << 1;
+  }
+}
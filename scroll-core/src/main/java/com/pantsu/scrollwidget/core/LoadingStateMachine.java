@@ -0,0 +1,286 @@
+package com.pantsu.scrollwidget.core;
+
+/**
+ * 上拉/下拉加载的位置计算与状态切换，不依赖 Android，可以在 JVM 上测试和做基准测试。
+ * <p>
+ * 位置（position）即容器的滚动偏移：{@link #getTopPosition()} 时顶部 LoadingView 完全展开，
+ * {@link #getStartPosition()} 时只显示列表，{@link #getBottomPosition()} 时底部 LoadingView 完全展开。
+ * 视图层负责把位置应用到 View 上，并通过 {@link EdgeState} 告知列表是否已滚动到边界。
+ */
+public final class LoadingStateMachine {
+
+  /** 当前手势的滚动状态 */
+  public enum ScrollState {
+    NONE,
+    LOADING_TOP,
+    LOADING_BOTTOM
+  }
+
+  /** 手指抬起、本次嵌套滚动结束后需要执行的动作 */
+  public enum IdleAction {
+    NONE,
+    /** 无动画回到起始位置 */
+    RESET,
+    LOAD_TOP,
+    LOAD_BOTTOM
+  }
+
+  /** 列表是否已滚动到边界，只在需要时查询 */
+  public interface EdgeState {
+    boolean isAtTop();
+
+    boolean isAtBottom();
+  }
+
+  private final EdgeState mEdgeState;
+
+  private int mTopViewHeight;
+  private int mBottomViewHeight;
+  private int mStartPosition;
+  private int mTopPosition;
+  private int mBottomPosition;
+  private int mPosition;
+
+  private boolean mShowTopLoadingView = true;
+  private boolean mShowBottomLoadingView = true;
+
+  private ScrollState mScrollState = ScrollState.NONE;
+  private boolean mIsLoading;
+  private Edge mLoadingEdge;
+
+  public LoadingStateMachine(EdgeState edgeState) {
+    mEdgeState = edgeState;
+  }
+
+  /**
+   * 设置两个 LoadingView 的高度，并重新计算各个位置；当前位置相对起始位置的偏移保持不变。
+   */
+  public void setLoadingViewHeights(int topViewHeight, int bottomViewHeight) {
+    final int offset = mPosition - mStartPosition;
+    mTopViewHeight = topViewHeight;
+    mBottomViewHeight = bottomViewHeight;
+    mTopPosition = 0;
+    mStartPosition = topViewHeight;
+    mBottomPosition = topViewHeight + bottomViewHeight;
+    mPosition = clamp(mStartPosition + offset, mTopPosition, mBottomPosition);
+  }
+
+  public int getTopViewHeight() {
+    return mTopViewHeight;
+  }
+
+  public int getBottomViewHeight() {
+    return mBottomViewHeight;
+  }
+
+  public int getStartPosition() {
+    return mStartPosition;
+  }
+
+  public int getTopPosition() {
+    return mTopPosition;
+  }
+
+  public int getBottomPosition() {
+    return mBottomPosition;
+  }
+
+  public int getPosition() {
+    return mPosition;
+  }
+
+  public void setPosition(int position) {
+    mPosition = position;
+  }
+
+  public void setShowTopLoadingView(boolean showTopLoadingView) {
+    mShowTopLoadingView = showTopLoadingView;
+  }
+
+  public void setShowBottomLoadingView(boolean showBottomLoadingView) {
+    mShowBottomLoadingView = showBottomLoadingView;
+  }
+
+  public boolean isShowTopLoadingView() {
+    return mShowTopLoadingView;
+  }
+
+  public boolean isShowBottomLoadingView() {
+    return mShowBottomLoadingView;
+  }
+
+  public ScrollState getScrollState() {
+    return mScrollState;
+  }
+
+  /** 列表内容相对起始位置的偏移，即当前 LoadingView 展开的高度 */
+  public int getTargetViewOffset() {
+    return Math.abs(mPosition - mStartPosition);
+  }
+
+  /** 两个 LoadingView 带来的额外滚动范围 */
+  public int getExtraScrollRange() {
+    return mTopViewHeight + mBottomViewHeight;
+  }
+
+  // ---------------------------------------------------------------- 手势
+
+  /**
+   * 嵌套滚动前由父容器先处理，dy 为滚动距离（向上滚动内容为正）。
+   *
+   * @return 是否消费了全部 dy，消费时位置已经更新
+   */
+  public boolean onNestedPreScroll(int dy) {
+    switch (mScrollState) {
+      case LOADING_TOP:
+        return scrollTop(dy);
+      case LOADING_BOTTOM:
+        return scrollBottom(dy);
+      case NONE:
+      default:
+        return false;
+    }
+  }
+
+  private boolean scrollTop(int dy) {
+    if (!mShowTopLoadingView) {
+      return false;
+    }
+    if (mPosition <= mStartPosition && mEdgeState.isAtTop()) {
+      mPosition = clamp(mPosition + dy, mTopPosition, mStartPosition);
+      return true;
+    }
+    return false;
+  }
+
+  private boolean scrollBottom(int dy) {
+    if (!mShowBottomLoadingView) {
+      return false;
+    }
+    if (mPosition >= mStartPosition && mEdgeState.isAtBottom()) {
+      mPosition = clamp(mPosition + dy, mStartPosition, mBottomPosition);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * 列表滚动到边界后由父容器接收剩余的距离，dyUnconsumed 为列表未能消费的滚动距离（向上滚动内容为正）。
+   * 开始展开 LoadingView 后本次手势进入加载状态，之后由 {@link #onNestedPreScroll(int)} 消费全部距离，
+   * 不需要在触摸事件中提前判断手势方向。
+   *
+   * @return 消费的距离，消费时位置已经更新
+   */
+  public int onNestedScroll(int dyUnconsumed) {
+    if (mIsLoading || dyUnconsumed == 0) {
+      return 0;
+    }
+    final int position = mPosition;
+    if (mScrollState == ScrollState.NONE) {
+      if (dyUnconsumed < 0 && scrollTop(dyUnconsumed)) {
+        mScrollState = ScrollState.LOADING_TOP;
+      } else if (dyUnconsumed > 0 && scrollBottom(dyUnconsumed)) {
+        mScrollState = ScrollState.LOADING_BOTTOM;
+      }
+    } else {
+      onNestedPreScroll(dyUnconsumed);
+    }
+    return mPosition - position;
+  }
+
+  /**
+   * 手指抬起、本次嵌套滚动结束时决定下一步动作，同时结束当前手势的状态。
+   * 只有本次手势展开过 LoadingView 时才需要处理，FLING 到达边界由 {@link #onFlingOverscroll(int)} 处理。
+   *
+   * @param touchSlop LoadingView 展开不足该距离时直接复位
+   */
+  public IdleAction onTouchScrollFinished(int touchSlop) {
+    final ScrollState scrollState = mScrollState;
+    mScrollState = ScrollState.NONE;
+    if (mIsLoading || scrollState == ScrollState.NONE) {
+      return IdleAction.NONE;
+    }
+    if (getTargetViewOffset() < touchSlop) {
+      return IdleAction.RESET;
+    }
+    return scrollState == ScrollState.LOADING_TOP ? IdleAction.LOAD_TOP : IdleAction.LOAD_BOTTOM;
+  }
+
+  /**
+   * FLING 过程中列表到达边界时调用，dyUnconsumed 为列表未能消费的滚动距离（向上滚动内容为正）。
+   *
+   * @return 需要借助剩余速度弹出的 LoadingView，不需要时返回 null
+   */
+  public Edge onFlingOverscroll(int dyUnconsumed) {
+    if (mIsLoading || mScrollState != ScrollState.NONE) {
+      return null;
+    }
+    if (dyUnconsumed < 0 && mShowTopLoadingView) {
+      return Edge.TOP;
+    } else if (dyUnconsumed > 0 && mShowBottomLoadingView) {
+      return Edge.BOTTOM;
+    }
+    return null;
+  }
+
+  // ---------------------------------------------------------------- 加载
+
+  public boolean isLoading() {
+    return mIsLoading;
+  }
+
+  public Edge getLoadingEdge() {
+    return mLoadingEdge;
+  }
+
+  /** 是否已经在向 edge 方向加载 */
+  public boolean isLoading(Edge edge) {
+    return mIsLoading && mLoadingEdge == edge;
+  }
+
+  public void startLoading(Edge edge) {
+    mIsLoading = true;
+    mLoadingEdge = edge;
+  }
+
+  public void stopLoading() {
+    mIsLoading = false;
+    mLoadingEdge = null;
+  }
+
+  public int getLoadPosition(Edge edge) {
+    return (edge == Edge.TOP) ? mTopPosition : mBottomPosition;
+  }
+
+  /** 根据当前位置判断展开的是哪个 LoadingView */
+  public Edge getTargetLoadEdge() {
+    return (mPosition <= mStartPosition) ? Edge.TOP : Edge.BOTTOM;
+  }
+
+  /**
+   * 从当前位置滚动到 targetPosition 的动画时长：展开一个完整 LoadingView 耗时 fullDuration，按距离等比缩放。
+   */
+  public long getAnimationDuration(long fullDuration, Edge edge, int targetPosition) {
+    final long viewHeight = (edge == Edge.TOP) ? mTopViewHeight : mBottomViewHeight;
+    if (viewHeight <= 0) {
+      return 0L;
+    }
+    return fullDuration * Math.abs(mPosition - targetPosition) / viewHeight;
+  }
+
+  /**
+   * 以 velocity（像素/秒）的速度滚动到 edge 的加载位置所需的时长，不超过普通动画的时长。
+   */
+  public long getFlingAnimationDuration(long fullDuration, Edge edge, float velocity) {
+    final int loadPosition = getLoadPosition(edge);
+    final long duration = getAnimationDuration(fullDuration, edge, loadPosition);
+    if (velocity == 0f) {
+      return duration;
+    }
+    return Math.min(duration, (long) (Math.abs(mPosition - loadPosition) * 1000f / Math.abs(velocity)));
+  }
+
+  private static int clamp(int value, int min, int max) {
+    return value < min ? min : (value > max ? max : value);
+  }
+}
@@ -0,0 +1,144 @@
+package com.pantsu.scrollwidget.core;
+
+/**
+ * 偏移量动画的数值部分：只负责按帧间隔推进数值，不依赖 Android，帧回调由视图层驱动。
+ * <p>
+ * 同一个实例可以反复使用；动画进行中再次调用 {@link #animateTo(Mode, int, int, long)} 会从当前值
+ * （弹簧模式下还有当前速度）继续向新目标移动，不需要取消后重新创建。
+ */
+public final class OffsetAnimation {
+
+  public enum Mode {
+    /** 按给定时长匀速移动 */
+    LINEAR,
+    /** 弹簧模型，时长由刚度和阻尼决定 */
+    SPRING
+  }
+
+  /** 与 androidx SpringForce.STIFFNESS_MEDIUM 一致 */
+  public static final float DEFAULT_STIFFNESS = 1500f;
+  /** 临界阻尼，不回弹，避免越过起始位置 */
+  public static final float DEFAULT_DAMPING_RATIO = 1f;
+
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+  /** 单次积分的最大步长，帧间隔较大时拆分成多步，保证数值稳定 */
+  private static final long MAX_SPRING_STEP_NANOS = 4_000_000L;
+  private static final float SETTLE_DISTANCE = 0.5f;
+  private static final float SETTLE_VELOCITY = 10f;
+
+  private float mStiffness = DEFAULT_STIFFNESS;
+  private float mDampingRatio = DEFAULT_DAMPING_RATIO;
+
+  private Mode mMode = Mode.LINEAR;
+  private boolean mRunning;
+  private float mValue;
+  /** 像素/秒 */
+  private float mVelocity;
+  private float mFrom;
+  private int mTarget;
+  private long mDurationNanos;
+  private long mElapsedNanos;
+
+  public void setSpring(float stiffness, float dampingRatio) {
+    mStiffness = stiffness;
+    mDampingRatio = dampingRatio;
+  }
+
+  /**
+   * 开始向 to 移动；动画进行中时忽略 from，从当前值和速度继续。
+   *
+   * @param durationMs 仅 {@link Mode#LINEAR} 使用
+   */
+  public void animateTo(Mode mode, int from, int to, long durationMs) {
+    if (!mRunning) {
+      mValue = from;
+      mVelocity = 0f;
+    }
+    mMode = mode;
+    mFrom = mValue;
+    mTarget = to;
+    mDurationNanos = durationMs * 1_000_000L;
+    mElapsedNanos = 0L;
+    if (mode == Mode.LINEAR && mDurationNanos > 0L) {
+      mVelocity = (mTarget - mFrom) * NANOS_PER_SECOND / mDurationNanos;
+    }
+    mRunning = true;
+  }
+
+  /**
+   * 推进 deltaNanos 时长
+   *
+   * @return 动画是否仍在进行
+   */
+  public boolean step(long deltaNanos) {
+    if (!mRunning) {
+      return false;
+    }
+    if (mMode == Mode.LINEAR) {
+      stepLinear(deltaNanos);
+    } else {
+      stepSpring(deltaNanos);
+    }
+    return mRunning;
+  }
+
+  public void cancel() {
+    mRunning = false;
+    mVelocity = 0f;
+  }
+
+  public boolean isRunning() {
+    return mRunning;
+  }
+
+  public Mode getMode() {
+    return mMode;
+  }
+
+  public int getValue() {
+    return Math.round(mValue);
+  }
+
+  public float getVelocity() {
+    return mVelocity;
+  }
+
+  public int getTarget() {
+    return mTarget;
+  }
+
+  public long getDurationMs() {
+    return mDurationNanos / 1_000_000L;
+  }
+
+  private void stepLinear(long deltaNanos) {
+    mElapsedNanos += deltaNanos;
+    if (mElapsedNanos >= mDurationNanos) {
+      finish();
+      return;
+    }
+    mValue = mFrom + (mTarget - mFrom) * ((float) mElapsedNanos / mDurationNanos);
+  }
+
+  private void stepSpring(long deltaNanos) {
+    final float damping = 2f * mDampingRatio * (float) Math.sqrt(mStiffness);
+    while (deltaNanos > 0L) {
+      final long step = Math.min(deltaNanos, MAX_SPRING_STEP_NANOS);
+      final float dt = (float) step / NANOS_PER_SECOND;
+      // 半隐式欧拉：先更新速度再更新位置
+      final float acceleration = -mStiffness * (mValue - mTarget) - damping * mVelocity;
+      mVelocity += acceleration * dt;
+      mValue += mVelocity * dt;
+      deltaNanos -= step;
+    }
+    if (Math.abs(mValue - mTarget) < SETTLE_DISTANCE && Math.abs(mVelocity) < SETTLE_VELOCITY) {
+      finish();
+    }
+  }
+
+  private void finish() {
+    mValue = mTarget;
+    mVelocity = 0f;
+    mRunning = false;
+  }
+}
@@ -0,0 +1,281 @@
+package com.pantsu.scrollwidget.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * 持久化的分页缓存，以 [fromId, toId] 为键保存一页消息 id。
+ * <p>
+ * 文件格式：8 字节文件头（魔数 + 版本），之后是依次追加的记录，每条记录为
+ * {@code fromId, toId, count, id[count]}，全部是大端 int。同一区间后写入的记录覆盖先写入的。
+ * <p>
+ * 读取通过内存映射完成，打开时只扫描记录头建立索引，不解析 id；
+ * 写入先放进内存中的待写队列（此时已经可以读到），再在 writeExecutor 上批量追加到文件末尾。
+ * 缓存是尽力而为的：写入失败时丢弃这一批记录，文件尾部不完整的记录在下次打开时截掉。
+ */
+public final class PageFile implements Closeable {
+
+  /** "SWPC" */
+  private static final int MAGIC = 0x53575043;
+  private static final int VERSION = 1;
+  private static final int FILE_HEADER_BYTES = 8;
+  private static final int RECORD_HEADER_BYTES = 12;
+
+  private final RandomAccessFile mFile;
+  private final FileChannel mChannel;
+  private final long mMaxBytes;
+  private final Executor mWriteExecutor;
+
+  private final Object mLock = new Object();
+  /** 保证同一时间只有一个批次在写文件 */
+  private final Object mWriteLock = new Object();
+  /** 区间 -> 记录在文件中的偏移 */
+  private final Map<Long, Long> mIndex = new HashMap<>();
+  /** 还没有写入文件的页，按 put 的顺序写入 */
+  private final Map<Long, int[]> mPending = new LinkedHashMap<>();
+  private boolean mFlushScheduled;
+  private MappedByteBuffer mMapped;
+  private long mMappedSize;
+  /** 文件中有效数据的长度，新记录从这里开始追加 */
+  private long mFileSize;
+
+  private final Runnable mFlushTask = new Runnable() {
+    @Override
+    public void run() {
+      try {
+        flush();
+      } catch (IOException ignore) {
+        // 缓存写入失败不影响加载，下次 put 时重试写入新的页
+      }
+    }
+  };
+
+  private PageFile(RandomAccessFile file, long maxBytes, Executor writeExecutor) {
+    mFile = file;
+    mChannel = file.getChannel();
+    mMaxBytes = maxBytes;
+    mWriteExecutor = writeExecutor;
+  }
+
+  /**
+   * 打开或创建缓存文件，格式不匹配时清空重建
+   *
+   * @param maxBytes      文件超过该大小时清空后重新开始追加
+   * @param writeExecutor 执行批量写入的线程，不能是主线程
+   */
+  public static PageFile open(File file, long maxBytes, Executor writeExecutor) throws IOException {
+    PageFile pageFile = new PageFile(new RandomAccessFile(file, "rw"), maxBytes, writeExecutor);
+    try {
+      pageFile.load();
+    } catch (IOException e) {
+      pageFile.close();
+      throw e;
+    }
+    return pageFile;
+  }
+
+  private void load() throws IOException {
+    final long size = mChannel.size();
+    if (size < FILE_HEADER_BYTES || !hasValidHeader()) {
+      reset();
+      return;
+    }
+    final MappedByteBuffer buffer = mChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    long position = FILE_HEADER_BYTES;
+    while (position + RECORD_HEADER_BYTES <= size) {
+      final int from = buffer.getInt((int) position);
+      final int to = buffer.getInt((int) position + 4);
+      final int count = buffer.getInt((int) position + 8);
+      final long end = position + RECORD_HEADER_BYTES + 4L * count;
+      if (count < 0 || end > size) {
+        break;
+      }
+      mIndex.put(key(from, to), position);
+      position = end;
+    }
+    if (position < size) {
+      // 上次进程在写入过程中被杀，截掉不完整的记录
+      mChannel.truncate(position);
+    }
+    mFileSize = position;
+    mMapped = buffer;
+    mMappedSize = position;
+  }
+
+  private boolean hasValidHeader() throws IOException {
+    final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+    mChannel.read(header, 0);
+    return header.getInt(0) == MAGIC && header.getInt(4) == VERSION;
+  }
+
+  /** 清空文件，只保留文件头 */
+  private void reset() throws IOException {
+    mChannel.truncate(0);
+    final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+    header.putInt(MAGIC).putInt(VERSION).flip();
+    mChannel.write(header, 0);
+    mIndex.clear();
+    mFileSize = FILE_HEADER_BYTES;
+    mMapped = null;
+    mMappedSize = 0;
+  }
+
+  /**
+   * 读取 [fromId, toId] 区间的页，不存在时返回 null。可以在主线程调用，不经过任何解析。
+   */
+  public int[] get(int fromId, int toId) {
+    final long key = key(fromId, toId);
+    synchronized (mLock) {
+      final int[] pending = mPending.get(key);
+      if (pending != null) {
+        return pending.clone();
+      }
+      final Long offset = mIndex.get(key);
+      if (offset == null) {
+        return null;
+      }
+      try {
+        return read(offset);
+      } catch (IOException e) {
+        return null;
+      }
+    }
+  }
+
+  public boolean contains(int fromId, int toId) {
+    final long key = key(fromId, toId);
+    synchronized (mLock) {
+      return mPending.containsKey(key) || mIndex.containsKey(key);
+    }
+  }
+
+  private int[] read(long offset) throws IOException {
+    if (mMapped == null || offset + RECORD_HEADER_BYTES > mMappedSize) {
+      remap();
+    }
+    final int position = (int) offset;
+    final int count = mMapped.getInt(position + 8);
+    if (offset + RECORD_HEADER_BYTES + 4L * count > mMappedSize) {
+      remap();
+    }
+    final int[] ids = new int[count];
+    final int idsPosition = position + RECORD_HEADER_BYTES;
+    for (int i = 0; i < count; ++i) {
+      ids[i] = mMapped.getInt(idsPosition + 4 * i);
+    }
+    return ids;
+  }
+
+  /** 文件追加后重新映射，覆盖到最新的有效长度 */
+  private void remap() throws IOException {
+    mMapped = mChannel.map(FileChannel.MapMode.READ_ONLY, 0, mFileSize);
+    mMappedSize = mFileSize;
+  }
+
+  /** 保存一页，立即可读，稍后在 writeExecutor 上与其他页一起写入文件 */
+  public void put(int fromId, int toId, int[] ids) {
+    final boolean schedule;
+    synchronized (mLock) {
+      mPending.put(key(fromId, toId), ids.clone());
+      schedule = !mFlushScheduled;
+      mFlushScheduled = true;
+    }
+    if (schedule) {
+      mWriteExecutor.execute(mFlushTask);
+    }
+  }
+
+  /**
+   * 把待写队列中的页一次性追加到文件末尾，在写入线程调用。
+   * 写文件时不持有读锁，主线程的 get 不会被磁盘 IO 阻塞。
+   */
+  public void flush() throws IOException {
+    synchronized (mWriteLock) {
+      final List<Map.Entry<Long, int[]>> batch;
+      synchronized (mLock) {
+        mFlushScheduled = false;
+        if (mPending.isEmpty()) {
+          return;
+        }
+        // 拷贝键值，LinkedHashMap 的 Entry 在同一区间再次 put 时会原地修改
+        batch = new ArrayList<>(mPending.size());
+        for (Map.Entry<Long, int[]> entry : mPending.entrySet()) {
+          batch.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+        }
+      }
+
+      int bytes = 0;
+      for (Map.Entry<Long, int[]> entry : batch) {
+        bytes += RECORD_HEADER_BYTES + 4 * entry.getValue().length;
+      }
+      final ByteBuffer buffer = ByteBuffer.allocate(bytes);
+      for (Map.Entry<Long, int[]> entry : batch) {
+        final long key = entry.getKey();
+        final int[] ids = entry.getValue();
+        buffer.putInt((int) (key >> 32)).putInt((int) key).putInt(ids.length);
+        for (int id : ids) {
+          buffer.putInt(id);
+        }
+      }
+      buffer.flip();
+
+      final long start;
+      synchronized (mLock) {
+        if (mFileSize + bytes > mMaxBytes) {
+          reset();
+        }
+        start = mFileSize;
+      }
+      // 只有写入线程会修改 mFileSize 之后的区域，读取方不会访问到正在写的数据
+      long position = start;
+      while (buffer.hasRemaining()) {
+        position += mChannel.write(buffer, position);
+      }
+
+      synchronized (mLock) {
+        mFileSize = position;
+        long offset = start;
+        for (Map.Entry<Long, int[]> entry : batch) {
+          final Long key = entry.getKey();
+          mIndex.put(key, offset);
+          offset += RECORD_HEADER_BYTES + 4 * entry.getValue().length;
+          // 写入期间同一区间又被 put 过时保留新的数据，等下一批写入
+          if (mPending.get(key) == entry.getValue()) {
+            mPending.remove(key);
+          }
+        }
+      }
+    }
+  }
+
+  /** 文件中有效数据的长度 */
+  public long size() {
+    synchronized (mLock) {
+      return mFileSize;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (mLock) {
+      mMapped = null;
+      mFile.close();
+    }
+  }
+
+  private static long key(int fromId, int toId) {
+    return ((long) fromId << 32) | (toId & 0xffffffffL);
+  }
+}
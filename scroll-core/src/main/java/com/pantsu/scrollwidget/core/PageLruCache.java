@@ -0,0 +1,160 @@
+package com.pantsu.scrollwidget.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 已解码分页的内存 LRU 缓存，以会话和 [fromId, toId] 区间为键，可以在多个列表之间共享。
+ * <p>
+ * 容量按条目数或估算的字节数限制，超出时淘汰最久未使用的页。缓存中的数组会直接返回给调用方，不能修改。
+ */
+public final class PageLruCache {
+
+  /** 容量的计算方式 */
+  public enum Bound {
+    /** 所有页的消息条数之和 */
+    ITEMS,
+    /** 所有页估算占用的字节数 */
+    BYTES
+  }
+
+  /** 数组对象头 + 长度 */
+  private static final int ARRAY_HEADER_BYTES = 16;
+  /** 键对象、HashMap 节点和链表指针的大致开销 */
+  private static final int ENTRY_OVERHEAD_BYTES = 80;
+
+  private final Bound mBound;
+  private final long mMaxSize;
+  private final LinkedHashMap<Key, int[]> mPages = new LinkedHashMap<>(16, 0.75f, true);
+  private long mSize;
+
+  private long mHitCount;
+  private long mMissCount;
+  private long mPutCount;
+  private long mEvictionCount;
+
+  public PageLruCache(Bound bound, long maxSize) {
+    mBound = bound;
+    mMaxSize = maxSize;
+  }
+
+  public synchronized int[] get(String conversationId, int fromId, int toId) {
+    final int[] page = mPages.get(new Key(conversationId, fromId, toId));
+    if (page != null) {
+      ++mHitCount;
+    } else {
+      ++mMissCount;
+    }
+    return page;
+  }
+
+  /** 放入一页；单页超过总容量时不缓存 */
+  public synchronized void put(String conversationId, int fromId, int toId, int[] ids) {
+    final long size = sizeOf(ids);
+    if (size > mMaxSize) {
+      return;
+    }
+    ++mPutCount;
+    final int[] previous = mPages.put(new Key(conversationId, fromId, toId), ids);
+    mSize += size;
+    if (previous != null) {
+      mSize -= sizeOf(previous);
+    }
+    trimToSize(mMaxSize);
+  }
+
+  public synchronized void remove(String conversationId, int fromId, int toId) {
+    final int[] previous = mPages.remove(new Key(conversationId, fromId, toId));
+    if (previous != null) {
+      mSize -= sizeOf(previous);
+    }
+  }
+
+  public synchronized void evictAll() {
+    trimToSize(0);
+  }
+
+  private void trimToSize(long maxSize) {
+    final Iterator<Map.Entry<Key, int[]>> iterator = mPages.entrySet().iterator();
+    while (mSize > maxSize && iterator.hasNext()) {
+      final int[] page = iterator.next().getValue();
+      iterator.remove();
+      mSize -= sizeOf(page);
+      ++mEvictionCount;
+    }
+  }
+
+  private long sizeOf(int[] ids) {
+    return (mBound == Bound.ITEMS) ? ids.length : estimateBytes(ids.length);
+  }
+
+  /** 一页 count 条消息估算占用的字节数 */
+  public static long estimateBytes(int count) {
+    return ENTRY_OVERHEAD_BYTES + ARRAY_HEADER_BYTES + 4L * count;
+  }
+
+  public synchronized Stats getStats() {
+    return new Stats(mBound, mMaxSize, mSize, mPages.size(), mHitCount, mMissCount, mPutCount, mEvictionCount);
+  }
+
+  /** 缓存统计的快照 */
+  public static final class Stats {
+    public final Bound bound;
+    public final long maxSize;
+    public final long size;
+    public final int pageCount;
+    public final long hitCount;
+    public final long missCount;
+    public final long putCount;
+    public final long evictionCount;
+
+    Stats(Bound bound, long maxSize, long size, int pageCount,
+          long hitCount, long missCount, long putCount, long evictionCount) {
+      this.bound = bound;
+      this.maxSize = maxSize;
+      this.size = size;
+      this.pageCount = pageCount;
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.putCount = putCount;
+      this.evictionCount = evictionCount;
+    }
+
+    @Override
+    public String toString() {
+      return "PageLruCache.Stats{size=" + size + "/" + maxSize + " " + bound
+          + ", pages=" + pageCount + ", hits=" + hitCount + ", misses=" + missCount
+          + ", puts=" + putCount + ", evictions=" + evictionCount + "}";
+    }
+  }
+
+  private static final class Key {
+    final String mConversationId;
+    final int mFromId;
+    final int mToId;
+
+    Key(String conversationId, int fromId, int toId) {
+      mConversationId = conversationId;
+      mFromId = fromId;
+      mToId = toId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      final Key key = (Key) o;
+      return mFromId == key.mFromId && mToId == key.mToId && mConversationId.equals(key.mConversationId);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * mConversationId.hashCode() + mFromId) + mToId;
+    }
+  }
+}
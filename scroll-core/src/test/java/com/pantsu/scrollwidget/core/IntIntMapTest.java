@@ -0,0 +1,61 @@
+package com.pantsu.scrollwidget.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IntIntMapTest {
+
+  @Test
+  public void putGetRemove() {
+    IntIntMap map = new IntIntMap();
+    map.put(7, 70);
+    map.put(-3, 30);
+    map.put(7, 71);
+    assertEquals(2, map.size());
+    assertEquals(71, map.get(7, -1));
+    assertEquals(30, map.get(-3, -1));
+    assertEquals(-1, map.get(8, -1));
+    assertTrue(map.remove(7));
+    assertFalse(map.remove(7));
+    assertFalse(map.containsKey(7));
+    assertEquals(1, map.size());
+  }
+
+  @Test
+  public void matchesHashMapUnderRandomOperations() {
+    Random random = new Random(42);
+    IntIntMap map = new IntIntMap();
+    Map<Integer, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 100_000; ++i) {
+      // 取值范围较小，保证大量碰撞、覆盖和删除
+      final int key = random.nextInt(2000) - 1000;
+      switch (random.nextInt(3)) {
+        case 0:
+          map.put(key, i);
+          expected.put(key, i);
+          break;
+        case 1:
+          assertEquals(expected.remove(key) != null, map.remove(key));
+          break;
+        default:
+          final Integer value = expected.get(key);
+          assertEquals(value == null ? Integer.MIN_VALUE : value, map.get(key, Integer.MIN_VALUE));
+          break;
+      }
+      assertEquals(expected.size(), map.size());
+    }
+    for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+      assertEquals((int) entry.getValue(), map.get(entry.getKey(), Integer.MIN_VALUE));
+    }
+    map.clear();
+    assertTrue(map.isEmpty());
+    assertFalse(map.containsKey(expected.keySet().iterator().next()));
+  }
+}
@@ -0,0 +1,179 @@
+package com.pantsu.scrollwidget.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LoadingStateMachineTest {
+
+  private static final int VIEW_HEIGHT = 120;
+  private static final int TOUCH_SLOP = 24;
+
+  private GestureReplayer mReplayer;
+  private LoadingStateMachine mMachine;
+
+  @Before
+  public void setUp() {
+    mReplayer = new GestureReplayer(VIEW_HEIGHT, VIEW_HEIGHT, TOUCH_SLOP);
+    mMachine = mReplayer.getMachine();
+  }
+
+  @Test
+  public void positionsFollowLoadingViewHeights() {
+    assertEquals(0, mMachine.getTopPosition());
+    assertEquals(VIEW_HEIGHT, mMachine.getStartPosition());
+    assertEquals(2 * VIEW_HEIGHT, mMachine.getBottomPosition());
+    assertEquals(VIEW_HEIGHT, mMachine.getPosition());
+  }
+
+  @Test
+  public void resizeKeepsOffsetFromStart() {
+    mMachine.setPosition(VIEW_HEIGHT - 30);
+    mMachine.setLoadingViewHeights(200, 80);
+    assertEquals(170, mMachine.getPosition());
+    assertEquals(30, mMachine.getTargetViewOffset());
+  }
+
+  @Test
+  public void pullAtTopIsClampedAndStartsLoading() {
+    GestureRecording pull = new GestureRecording.Builder()
+        .preScroll(-100, true, false).scroll(-100, true, false)
+        .preScroll(-100, true, false)
+        .stop(true, false)
+        .build("pull");
+    assertEquals(0, mReplayer.replay(pull));
+    assertEquals(LoadingStateMachine.ScrollState.NONE, mMachine.getScrollState());
+    assertTrue(mMachine.isLoading(Edge.TOP));
+    assertEquals(1, mReplayer.getLoadCount());
+  }
+
+  @Test
+  public void pullAwayFromEdgeIsNotConsumed() {
+    assertFalse(mMachine.onNestedPreScroll(-10));
+    assertEquals(0, mMachine.onNestedScroll(-10));
+    assertEquals(LoadingStateMachine.ScrollState.NONE, mMachine.getScrollState());
+    assertEquals(VIEW_HEIGHT, mMachine.getPosition());
+  }
+
+  @Test
+  public void pullBackTowardsListStopsAtStart() {
+    GestureRecording pull = new GestureRecording.Builder()
+        .preScroll(50, false, true).scroll(50, false, true)
+        .preScroll(-80, false, true)
+        .build("pull_back");
+    assertEquals(VIEW_HEIGHT, mReplayer.replay(pull));
+  }
+
+  @Test
+  public void hiddenLoadingViewIsNotRevealed() {
+    mMachine.setShowTopLoadingView(false);
+    GestureRecording pull = new GestureRecording.Builder()
+        .preScroll(-10, true, false).scroll(-10, true, false)
+        .stop(true, false)
+        .fling(-10, true, false)
+        .build("pull_hidden");
+    assertEquals(VIEW_HEIGHT, mReplayer.replay(pull));
+    assertEquals(0, mReplayer.getLoadCount());
+  }
+
+  @Test
+  public void flingIntoEdgeLoadsThatEdge() {
+    GestureRecording fling = new GestureRecording.Builder()
+        .fling(35, false, true)
+        .build("fling");
+    mReplayer.replay(fling);
+    assertTrue(mMachine.isLoading(Edge.BOTTOM));
+    assertEquals(mMachine.getBottomPosition(), mMachine.getPosition());
+    assertEquals(1, mReplayer.getLoadCount());
+  }
+
+  @Test
+  public void shortPullResets() {
+    GestureRecording pull = new GestureRecording.Builder()
+        .scroll(-(TOUCH_SLOP - 1), true, false)
+        .stop(true, false)
+        .build("short_pull");
+    assertEquals(VIEW_HEIGHT, mReplayer.replay(pull));
+    assertEquals(0, mReplayer.getLoadCount());
+  }
+
+  @Test
+  public void animationDurationScalesWithDistance() {
+    mMachine.setPosition(VIEW_HEIGHT / 2);
+    assertEquals(150L, mMachine.getAnimationDuration(300L, Edge.TOP, mMachine.getTopPosition()));
+    assertEquals(0L, new LoadingStateMachine(mReplayer).getAnimationDuration(300L, Edge.TOP, 10));
+  }
+
+  @Test
+  public void recordingRoundTripsThroughText() throws IOException {
+    GestureRecording recording = new GestureRecording.Builder()
+        .preScroll(-12, true, false)
+        .scroll(-12, true, false)
+        .stop(true, true)
+        .fling(-40, false, false)
+        .build("round_trip");
+    StringWriter out = new StringWriter();
+    recording.write(out);
+    GestureRecording parsed = GestureRecording.parse("round_trip", new StringReader(out.toString()));
+    StringWriter again = new StringWriter();
+    parsed.write(again);
+    assertEquals(out.toString(), again.toString());
+    assertEquals(4, parsed.getEventCount());
+  }
+
+  @Test
+  public void unconsumedScrollAtTopLatchesGesture() {
+    mReplayer.replay(new GestureRecording.Builder().scroll(-30, true, false).build("scroll"));
+    assertEquals(VIEW_HEIGHT - 30, mMachine.getPosition());
+    assertEquals(LoadingStateMachine.ScrollState.LOADING_TOP, mMachine.getScrollState());
+    assertEquals(0, mMachine.onNestedScroll(0));
+    // 反向拖动也由 LoadingView 消费，直到手指抬起
+    assertTrue(mMachine.onNestedPreScroll(50));
+    assertEquals(VIEW_HEIGHT, mMachine.getPosition());
+    assertEquals(LoadingStateMachine.IdleAction.RESET, mMachine.onTouchScrollFinished(TOUCH_SLOP));
+    assertEquals(LoadingStateMachine.ScrollState.NONE, mMachine.getScrollState());
+  }
+
+  @Test
+  public void touchScrollFinishedLoadsOnlyWhenGestureRevealedLoadingView() {
+    mReplayer.replay(new GestureRecording.Builder().preScroll(30, false, true).build("pre_scroll"));
+    assertEquals(VIEW_HEIGHT, mMachine.getPosition());
+    assertEquals(LoadingStateMachine.IdleAction.NONE, mMachine.onTouchScrollFinished(TOUCH_SLOP));
+    assertEquals(0, mMachine.onNestedScroll(-30));
+
+    assertEquals(40, mMachine.onNestedScroll(40));
+    assertEquals(LoadingStateMachine.IdleAction.LOAD_BOTTOM, mMachine.onTouchScrollFinished(TOUCH_SLOP));
+    mMachine.startLoading(Edge.BOTTOM);
+    assertEquals(0, mMachine.onNestedScroll(40));
+  }
+
+  @Test
+  public void flingOverscrollStartsLoadingOnce() {
+    assertEquals(Edge.BOTTOM, mMachine.onFlingOverscroll(42));
+    mMachine.startLoading(Edge.BOTTOM);
+    assertEquals(null, mMachine.onFlingOverscroll(42));
+    assertEquals(LoadingStateMachine.IdleAction.NONE, mMachine.onTouchScrollFinished(TOUCH_SLOP));
+  }
+
+  @Test
+  public void flingOverscrollRespectsShowFlags() {
+    mMachine.setShowTopLoadingView(false);
+    assertEquals(null, mMachine.onFlingOverscroll(-42));
+    assertEquals(null, mMachine.onFlingOverscroll(0));
+  }
+
+  @Test
+  public void flingDurationFollowsVelocity() {
+    // 120px，每秒 2400px => 50ms，不超过普通动画的 300ms
+    assertEquals(50L, mMachine.getFlingAnimationDuration(300L, Edge.TOP, -2400f));
+    assertEquals(300L, mMachine.getFlingAnimationDuration(300L, Edge.TOP, 100f));
+    assertEquals(300L, mMachine.getFlingAnimationDuration(300L, Edge.TOP, 0f));
+  }
+}
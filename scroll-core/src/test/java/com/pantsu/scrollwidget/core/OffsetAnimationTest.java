@@ -0,0 +1,64 @@
+package com.pantsu.scrollwidget.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class OffsetAnimationTest {
+
+  private static final long FRAME_NANOS = 16_000_000L;
+
+  private final OffsetAnimation mAnimation = new OffsetAnimation();
+
+  @Test
+  public void linearReachesTargetAfterDuration() {
+    mAnimation.animateTo(OffsetAnimation.Mode.LINEAR, 0, 100, 160L);
+    mAnimation.step(FRAME_NANOS * 5);
+    assertEquals(50, mAnimation.getValue());
+    assertTrue(mAnimation.step(FRAME_NANOS * 4));
+    assertFalse(mAnimation.step(FRAME_NANOS));
+    assertEquals(100, mAnimation.getValue());
+  }
+
+  @Test
+  public void zeroDurationFinishesOnFirstStep() {
+    mAnimation.animateTo(OffsetAnimation.Mode.LINEAR, 40, 0, 0L);
+    assertFalse(mAnimation.step(0L));
+    assertEquals(0, mAnimation.getValue());
+  }
+
+  @Test
+  public void springSettlesWithoutOvershoot() {
+    mAnimation.animateTo(OffsetAnimation.Mode.SPRING, 0, 120, 0L);
+    int frames = 0;
+    while (mAnimation.step(FRAME_NANOS)) {
+      assertTrue(mAnimation.getValue() <= 120);
+      assertTrue(++frames < 60);
+    }
+    assertEquals(120, mAnimation.getValue());
+  }
+
+  @Test
+  public void retargetContinuesFromCurrentValue() {
+    mAnimation.animateTo(OffsetAnimation.Mode.LINEAR, 0, 100, 160L);
+    mAnimation.step(FRAME_NANOS * 5);
+    mAnimation.animateTo(OffsetAnimation.Mode.LINEAR, 0, 0, 160L);
+    assertEquals(50, mAnimation.getValue());
+    mAnimation.step(FRAME_NANOS * 5);
+    assertEquals(25, mAnimation.getValue());
+  }
+
+  @Test
+  public void retargetToSpringKeepsVelocity() {
+    mAnimation.animateTo(OffsetAnimation.Mode.LINEAR, 0, 100, 160L);
+    mAnimation.step(FRAME_NANOS * 5);
+    final float velocity = mAnimation.getVelocity();
+    mAnimation.animateTo(OffsetAnimation.Mode.SPRING, 0, 0, 0L);
+    assertEquals(velocity, mAnimation.getVelocity(), 0f);
+    mAnimation.step(FRAME_NANOS / 4);
+    // 仍沿原方向运动一小段后才折返
+    assertTrue(mAnimation.getValue() > 50);
+  }
+}
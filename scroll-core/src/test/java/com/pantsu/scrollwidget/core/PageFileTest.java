@@ -0,0 +1,141 @@
+package com.pantsu.scrollwidget.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PageFileTest {
+
+  private static final long MAX_BYTES = 1024 * 1024;
+
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  /** 手动执行的写入线程，便于控制批量写入的时机 */
+  private final List<Runnable> mWrites = new ArrayList<>();
+  private final Executor mWriteExecutor = mWrites::add;
+
+  private File mFile;
+  private PageFile mPageFile;
+
+  @Before
+  public void setUp() throws IOException {
+    mFile = new File(mFolder.getRoot(), "pages.bin");
+    mPageFile = PageFile.open(mFile, MAX_BYTES, mWriteExecutor);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    mPageFile.close();
+  }
+
+  @Test
+  public void pendingPagesAreReadableBeforeFlush() {
+    mPageFile.put(100, 102, new int[]{100, 101, 102});
+    assertArrayEquals(new int[]{100, 101, 102}, mPageFile.get(100, 102));
+    assertNull(mPageFile.get(100, 101));
+  }
+
+  @Test
+  public void putsAreBatchedIntoOneWrite() {
+    mPageFile.put(1, 2, new int[]{1, 2});
+    mPageFile.put(3, 4, new int[]{3, 4});
+    assertEquals(1, mWrites.size());
+    runWrites();
+    assertEquals(8 + 2 * (12 + 8), mPageFile.size());
+  }
+
+  @Test
+  public void pagesSurviveReopen() throws IOException {
+    mPageFile.put(1, 3, new int[]{1, 2, 3});
+    mPageFile.put(-5, -4, new int[]{-5, -4});
+    runWrites();
+    // 同一区间后写入的覆盖先写入的
+    mPageFile.put(1, 3, new int[]{1, 3});
+    runWrites();
+    reopen();
+
+    assertArrayEquals(new int[]{1, 3}, mPageFile.get(1, 3));
+    assertArrayEquals(new int[]{-5, -4}, mPageFile.get(-5, -4));
+    assertTrue(mPageFile.contains(1, 3));
+  }
+
+  @Test
+  public void readsAfterAppendRemap() {
+    mPageFile.put(1, 1, new int[]{1});
+    runWrites();
+    assertArrayEquals(new int[]{1}, mPageFile.get(1, 1));
+    mPageFile.put(2, 2, new int[]{2});
+    runWrites();
+    assertArrayEquals(new int[]{2}, mPageFile.get(2, 2));
+  }
+
+  @Test
+  public void truncatedTailIsDropped() throws IOException {
+    mPageFile.put(1, 2, new int[]{1, 2});
+    mPageFile.put(3, 4, new int[]{3, 4});
+    runWrites();
+    final long size = mPageFile.size();
+    mPageFile.close();
+    try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+      file.setLength(size - 2);
+    }
+    mPageFile = PageFile.open(mFile, MAX_BYTES, mWriteExecutor);
+
+    assertArrayEquals(new int[]{1, 2}, mPageFile.get(1, 2));
+    assertNull(mPageFile.get(3, 4));
+    assertEquals(8 + 12 + 8, mPageFile.size());
+  }
+
+  @Test
+  public void corruptHeaderResetsFile() throws IOException {
+    mPageFile.close();
+    try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+      file.writeInt(0);
+    }
+    mPageFile = PageFile.open(mFile, MAX_BYTES, mWriteExecutor);
+    assertEquals(8, mPageFile.size());
+  }
+
+  @Test
+  public void exceedingMaxBytesStartsOver() throws IOException {
+    mPageFile.close();
+    mPageFile = PageFile.open(mFile, 8 + 2 * (12 + 4 * 4), mWriteExecutor);
+    mPageFile.put(1, 4, new int[]{1, 2, 3, 4});
+    runWrites();
+    mPageFile.put(5, 8, new int[]{5, 6, 7, 8});
+    runWrites();
+    mPageFile.put(9, 12, new int[]{9, 10, 11, 12});
+    runWrites();
+
+    assertNull(mPageFile.get(1, 4));
+    assertArrayEquals(new int[]{9, 10, 11, 12}, mPageFile.get(9, 12));
+  }
+
+  private void reopen() throws IOException {
+    mPageFile.close();
+    mPageFile = PageFile.open(mFile, MAX_BYTES, mWriteExecutor);
+  }
+
+  private void runWrites() {
+    List<Runnable> writes = new ArrayList<>(mWrites);
+    mWrites.clear();
+    for (Runnable write : writes) {
+      write.run();
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package com.pantsu.scrollwidget.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class PageLruCacheTest {
+
+  private static final String CONVERSATION = "c1";
+
+  @Test
+  public void itemBoundEvictsLeastRecentlyUsed() {
+    PageLruCache cache = new PageLruCache(PageLruCache.Bound.ITEMS, 4);
+    cache.put(CONVERSATION, 1, 2, new int[]{1, 2});
+    cache.put(CONVERSATION, 3, 4, new int[]{3, 4});
+    // 访问后 [1, 2] 变为最近使用
+    cache.get(CONVERSATION, 1, 2);
+    cache.put(CONVERSATION, 5, 6, new int[]{5, 6});
+
+    assertArrayEquals(new int[]{1, 2}, cache.get(CONVERSATION, 1, 2));
+    assertNull(cache.get(CONVERSATION, 3, 4));
+    PageLruCache.Stats stats = cache.getStats();
+    assertEquals(4, stats.size);
+    assertEquals(2, stats.pageCount);
+    assertEquals(1, stats.evictionCount);
+    assertEquals(2, stats.hitCount);
+    assertEquals(1, stats.missCount);
+    assertEquals(3, stats.putCount);
+  }
+
+  @Test
+  public void byteBoundUsesEstimatedSize() {
+    final long pageBytes = PageLruCache.estimateBytes(20);
+    PageLruCache cache = new PageLruCache(PageLruCache.Bound.BYTES, 2 * pageBytes);
+    cache.put(CONVERSATION, 1, 20, new int[20]);
+    cache.put(CONVERSATION, 21, 40, new int[20]);
+    assertEquals(2 * pageBytes, cache.getStats().size);
+    cache.put(CONVERSATION, 41, 60, new int[20]);
+    assertEquals(2, cache.getStats().pageCount);
+    assertNull(cache.get(CONVERSATION, 1, 20));
+  }
+
+  @Test
+  public void conversationsAreSeparate() {
+    PageLruCache cache = new PageLruCache(PageLruCache.Bound.ITEMS, 100);
+    cache.put("a", 1, 2, new int[]{1, 2});
+    assertNull(cache.get("b", 1, 2));
+  }
+
+  @Test
+  public void replacingPageUpdatesSize() {
+    PageLruCache cache = new PageLruCache(PageLruCache.Bound.ITEMS, 100);
+    cache.put(CONVERSATION, 1, 3, new int[]{1, 2, 3});
+    cache.put(CONVERSATION, 1, 3, new int[]{1});
+    assertEquals(1, cache.getStats().size);
+    cache.remove(CONVERSATION, 1, 3);
+    assertEquals(0, cache.getStats().size);
+  }
+
+  @Test
+  public void oversizedPageIsNotCached() {
+    PageLruCache cache = new PageLruCache(PageLruCache.Bound.ITEMS, 2);
+    cache.put(CONVERSATION, 1, 3, new int[]{1, 2, 3});
+    assertNull(cache.get(CONVERSATION, 1, 3));
+    assertEquals(0, cache.getStats().evictionCount);
+  }
+
+  @Test
+  public void evictAllClearsCache() {
+    PageLruCache cache = new PageLruCache(PageLruCache.Bound.ITEMS, 100);
+    cache.put(CONVERSATION, 1, 2, new int[]{1, 2});
+    cache.evictAll();
+    assertEquals(0, cache.getStats().size);
+    assertEquals(1, cache.getStats().evictionCount);
+  }
+}